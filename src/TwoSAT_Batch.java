@@ -0,0 +1,442 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/** Class: TwoSAT_Batch.java
+ *
+ *  This class - high-throughput solver for many small 2-SAT formulas (e.g. 5-50 clauses each, like the
+ *  2sat_small0*.txt files), without a file read or any HashMaps/HashSets/ArrayLists per formula.
+ *
+ *  All formulas are packed into one int[] arena: formula f consists of the signed literals
+ *  arena[offsets[f]] ... arena[offsets[f + 1] - 1], two per clause, in the same format as the data files.
+ *  For example, the two formulas (1 v 2) ^ (-1 v 2) and (3 v -3) are packed as:
+ *
+ *      arena   = {1, 2, -1, 2,  3, -3}
+ *      offsets = {0, 4, 6}
+ *
+ *  Each formula is solved with the same reduction as TwoSAT_SCC (implication graph + strongly connected components),
+ *  but the graph lives in primitive scratch arrays that belong to the worker thread and are only ever grown, never
+ *  re-allocated per formula. The SCCs are found with an iterative version of Tarjan's algorithm, which also yields
+ *  a model for free: a variable is TRUE if its positive literal's SCC comes after its negative literal's SCC in
+ *  topological order.
+ *
+ *  Formulas are spread across cores in chunks of 4096 (a multiple of 64), so that every chunk owns whole words of
+ *  the verdict bitmap.
+ */
+public class TwoSAT_Batch {
+
+	private static final int FORMULAS_PER_TASK = 64 * 64;	//must be a multiple of 64
+
+	/* Per-thread scratch buffers, grown on demand and reused for every formula solved on that thread. */
+	private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch();
+		}
+	};
+
+	/**
+	 * Class: Result
+	 *        The verdicts (and optionally the models) of a batch.
+	 */
+	public static class Result {
+		long[] satisfiable;		//bit f is set if formula f is satisfiable
+		int[] modelOffsets;		//the model of formula f is models[modelOffsets[f] + v] for variables v = 1, 2, ...
+		byte[] models;			//1 = TRUE, 0 = FALSE. Only filled for satisfiable formulas. Null if no models were asked for.
+
+		/**
+		 * Method: isSatisfiable
+		 * @param f formula index
+		 * @return true if formula f is satisfiable
+		 */
+		public boolean isSatisfiable(int f) {
+			return (this.satisfiable[f >>> 6] & (1L << f)) != 0;
+		}
+
+		/**
+		 * Method: getValue
+		 * @param f formula index
+		 * @param v variable label
+		 * @return the value of variable v in the model of formula f
+		 */
+		public boolean getValue(int f, int v) {
+			return this.models[this.modelOffsets[f] + v] != 0;
+		}
+	}
+	//end public static class Result
+
+	/**
+	 * Method: solve
+	 * @param arena   signed literals of all formulas, two per clause
+	 * @param offsets formula f spans arena[offsets[f]] ... arena[offsets[f + 1] - 1]
+	 * @param withModels whether to also return a model for every satisfiable formula
+	 * @return the verdicts (and models)
+	 * @throws IllegalArgumentException if the offsets do not cut the arena into whole clauses (see checkOffsets())
+	 */
+	public static Result solve(final int[] arena, final int[] offsets, boolean withModels) {
+		checkOffsets(arena, offsets);
+		final int numOfFormulas = offsets.length - 1;
+		final Result result = new Result();
+		result.satisfiable = new long[(numOfFormulas + 63) >>> 6];
+
+		/* A model needs one byte per variable. Find out how many variables each formula has. */
+		if (withModels) {
+			result.modelOffsets = new int[numOfFormulas + 1];
+			for (int f = 0; f < numOfFormulas; f++) {
+				int maxVar = 0;
+				for (int i = offsets[f]; i < offsets[f + 1]; i++) maxVar = Math.max(maxVar, Math.abs(arena[i]));
+				result.modelOffsets[f + 1] = result.modelOffsets[f] + maxVar + 1;
+			}
+			result.models = new byte[result.modelOffsets[numOfFormulas]];
+		}
+
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int from = 0; from < numOfFormulas; from += FORMULAS_PER_TASK) {
+			final int fFrom = from, fTo = Math.min(numOfFormulas, from + FORMULAS_PER_TASK);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					Scratch scratch = SCRATCH.get();
+					for (int f = fFrom; f < fTo; f++) {
+						if (scratch.solve(arena, offsets[f], offsets[f + 1], result.models,
+								result.models == null ? 0 : result.modelOffsets[f])) {
+							result.satisfiable[f >>> 6] |= 1L << f;	//this task owns the whole word
+						}
+					}
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Void> f : ForkJoinPool.commonPool().invokeAll(tasks)) f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+		return result;
+	}
+
+	/**
+	 * Method: checkOffsets
+	 *         The worker threads trust the offsets, so they are checked here, on the caller's thread: there must be at
+	 *         least one, they must not decrease, stay within the arena, and every formula must span whole clauses.
+	 * @param arena
+	 * @param offsets
+	 * @throws IllegalArgumentException if any of this does not hold
+	 */
+	private static void checkOffsets(int[] arena, int[] offsets) {
+		if (offsets.length == 0) throw new IllegalArgumentException("offsets must hold at least the start of the arena");
+		if (offsets[0] < 0) throw new IllegalArgumentException("Negative offset " + offsets[0]);
+		for (int f = 0; f < offsets.length - 1; f++) {
+			if (offsets[f + 1] < offsets[f]) {
+				throw new IllegalArgumentException(String.format("Offsets decrease at formula %s: %s > %s", f, offsets[f], offsets[f + 1]));
+			}
+			if ((offsets[f + 1] - offsets[f]) % 2 != 0) {
+				throw new IllegalArgumentException(String.format("Formula %s spans an odd no. of literals (%s)", f, offsets[f + 1] - offsets[f]));
+			}
+		}
+		if (offsets[offsets.length - 1] > arena.length) {
+			throw new IllegalArgumentException(String.format("Offset %s is beyond the end of the arena (%s literals)", offsets[offsets.length - 1], arena.length));
+		}
+	}
+
+	/**
+	 * Class: Scratch
+	 *        Reusable buffers for solving one formula at a time. Nodes of the implication graph are literal codes
+	 *        (2 * variable + (negated ? 1 : 0)), as in TwoSAT_ClauseStore.
+	 *
+	 *        This is the one SCC search of the packed engines: the batch solver and TwoSAT_ImplicationGraph use it on
+	 *        the heap, and TwoSAT_SCC.solveOffHeap() uses it on a TwoSAT_OffHeapArena. Edges are counted with
+	 *        longs, so the graph may have more than 2^31 of them (off-heap).
+	 */
+	static class Scratch {
+		private TwoSAT_Storage storage;			//where the buffers are allocated
+		TwoSAT_Storage.Longs edgeStart;		//outgoing edges of node x are edgeTo[edgeStart[x]] ... edgeTo[edgeStart[x + 1] - 1]
+		TwoSAT_Storage.Ints edgeTo;
+		TwoSAT_Storage.Ints index;			//Tarjan discovery index of each node, or -1 if not yet visited
+		TwoSAT_Storage.Ints low;				//Tarjan low-link of each node
+		TwoSAT_Storage.Ints comp;				//SCC no. of each node, or -1 while the node is still on the stack
+		TwoSAT_Storage.Ints stack;			//Tarjan's node stack
+		TwoSAT_Storage.Ints callNode;			//explicit DFS call stack: the node...
+		TwoSAT_Storage.Longs callEdge;		//...and the next outgoing edge to look at
+		int numOfNodes;					//no. of nodes in the graph of the last formula
+		int numOfComps;					//no. of SCCs in the graph of the last formula
+
+		/**
+		 * No-arg constructor: buffers on the heap.
+		 */
+		Scratch() {
+			this(TwoSAT_Storage.HEAP);
+		}
+
+		/**
+		 * 1-arg constructor
+		 * @param storage where to allocate the buffers
+		 */
+		Scratch(TwoSAT_Storage storage) {
+			this.storage = storage;
+			this.edgeStart = storage.allocateLongs(1);
+			this.edgeTo = storage.allocateInts(0);
+			this.index = this.low = this.comp = this.stack = this.callNode = storage.allocateInts(0);
+			this.callEdge = storage.allocateLongs(0);
+		}
+
+		/**
+		 * Method: solve
+		 * @param arena
+		 * @param from first literal of the formula
+		 * @param to   one past the last literal of the formula
+		 * @param models   receives the model if the formula is satisfiable (may be null)
+		 * @param modelOffset where the model of this formula starts in models
+		 * @return true if the formula is satisfiable
+		 */
+		boolean solve(int[] arena, int from, int to, byte[] models, int modelOffset) {
+			int maxVar = 0;
+			for (int i = from; i < to; i++) maxVar = Math.max(maxVar, Math.abs(TwoSAT_ClauseStore.checkRange(arena[i])));
+
+			/* Build the implication graph: for each clause (u OR v), add the edges ~u -> v and ~v -> u. */
+			beginGraph(maxVar, to - from);	//two edges per clause, two literals per clause
+			for (int i = from; i < to; i += 2) countEdges(TwoSAT_ClauseStore.code(arena[i]), TwoSAT_ClauseStore.code(arena[i + 1]));
+			placeEdges();
+			for (int i = from; i < to; i += 2) addEdges(TwoSAT_ClauseStore.code(arena[i]), TwoSAT_ClauseStore.code(arena[i + 1]));
+			endGraph();
+
+			tarjan(this.numOfNodes);
+			if (!isSatisfiable(maxVar)) return false;
+			if (models != null) {
+				for (int v = 1; v <= maxVar; v++) models[modelOffset + v] = (byte) (getValue(v) ? 1 : 0);
+			}
+			return true;
+		}
+
+		/**
+		 * Method: solve
+		 *         Same as above, for clauses given as literal codes (e.g. those of a TwoSAT_OffHeapFormula).
+		 * @param lit1 literal codes of the first literals
+		 * @param lit2 literal codes of the second literals
+		 * @param numOfClauses
+		 * @param maxVar the biggest variable label
+		 * @return true if the formula is satisfiable (the model is then available through getValue())
+		 */
+		boolean solve(TwoSAT_Storage.Ints lit1, TwoSAT_Storage.Ints lit2, long numOfClauses, int maxVar) {
+			beginGraph(maxVar, 2 * numOfClauses);
+			for (long c = 0; c < numOfClauses; c++) countEdges(lit1.get(c), lit2.get(c));
+			placeEdges();
+			for (long c = 0; c < numOfClauses; c++) addEdges(lit1.get(c), lit2.get(c));
+			endGraph();
+
+			tarjan(this.numOfNodes);
+			return isSatisfiable(maxVar);
+		}
+
+		/**
+		 * Method: beginGraph
+		 *         Makes room for a graph and clears the edge counts.
+		 * @param maxVar
+		 * @param numOfEdges
+		 */
+		private void beginGraph(int maxVar, long numOfEdges) {
+			this.numOfNodes = 2 * maxVar + 2;
+			ensureCapacity(this.numOfNodes, numOfEdges);
+			for (int x = 0; x <= this.numOfNodes; x++) this.edgeStart.set(x, 0);
+		}
+
+		/**
+		 * Method: countEdges
+		 *         First pass over the clauses: counts the edges ~u -> v and ~v -> u of clause (u OR v), one slot ahead.
+		 */
+		private void countEdges(int u, int v) {
+			this.edgeStart.set((u ^ 1) + 1, this.edgeStart.get((u ^ 1) + 1) + 1);
+			this.edgeStart.set((v ^ 1) + 1, this.edgeStart.get((v ^ 1) + 1) + 1);
+		}
+
+		/**
+		 * Method: placeEdges
+		 *         Turns the edge counts into start offsets (prefix sums).
+		 */
+		private void placeEdges() {
+			for (int x = 0; x < this.numOfNodes; x++) this.edgeStart.set(x + 1, this.edgeStart.get(x + 1) + this.edgeStart.get(x));
+		}
+
+		/**
+		 * Method: addEdges
+		 *         Second pass over the clauses: fills in the targets. edgeStart[x] serves as the write position of x.
+		 */
+		private void addEdges(int u, int v) {
+			long e = this.edgeStart.get(u ^ 1);
+			this.edgeTo.set(e, v);
+			this.edgeStart.set(u ^ 1, e + 1);
+			e = this.edgeStart.get(v ^ 1);
+			this.edgeTo.set(e, u);
+			this.edgeStart.set(v ^ 1, e + 1);
+		}
+
+		/**
+		 * Method: endGraph
+		 *         Undoes the shift of the start offsets from filling.
+		 */
+		private void endGraph() {
+			for (int x = this.numOfNodes; x > 0; x--) this.edgeStart.set(x, this.edgeStart.get(x - 1));
+			this.edgeStart.set(0, 0);
+		}
+
+		/**
+		 * Method: tarjan
+		 *         Iterative Tarjan SCC over nodes 0 ... numOfNodes - 1.
+		 * @param numOfNodes
+		 */
+		private void tarjan(int numOfNodes) {
+			TwoSAT_Storage.Longs edgeStart = this.edgeStart, callEdge = this.callEdge;
+			TwoSAT_Storage.Ints edgeTo = this.edgeTo, index = this.index, low = this.low, comp = this.comp;
+			TwoSAT_Storage.Ints stack = this.stack, callNode = this.callNode;
+			for (int x = 0; x < numOfNodes; x++) index.set(x, -1);
+			int counter = 0, numOfComps = 0, sp = 0;
+
+			for (int root = 2; root < numOfNodes; root++) {
+				if (index.get(root) >= 0) continue;
+				int depth = 0;
+				callNode.set(0, root);
+				callEdge.set(0, edgeStart.get(root));
+				index.set(root, counter);
+				low.set(root, counter++);
+				comp.set(root, -1);
+				stack.set(sp++, root);
+
+				while (depth >= 0) {
+					int x = callNode.get(depth);
+					long e = callEdge.get(depth);
+					if (e < edgeStart.get(x + 1)) {
+						callEdge.set(depth, e + 1);
+						int y = edgeTo.get(e);
+						if (index.get(y) < 0) {	//unvisited: "recurse"
+							index.set(y, counter);
+							low.set(y, counter++);
+							comp.set(y, -1);
+							stack.set(sp++, y);
+							depth++;
+							callNode.set(depth, y);
+							callEdge.set(depth, edgeStart.get(y));
+						}
+						else if (comp.get(y) < 0) {	//still on the stack
+							low.set(x, Math.min(low.get(x), index.get(y)));
+						}
+					}
+					else {
+						/* Done with x. If it is the root of an SCC, pop the whole SCC off the stack. */
+						if (low.get(x) == index.get(x)) {
+							int y;
+							do {
+								y = stack.get(--sp);
+								comp.set(y, numOfComps);
+							} while (y != x);
+							numOfComps++;
+						}
+						depth--;
+						if (depth >= 0) {
+							int parent = callNode.get(depth);
+							low.set(parent, Math.min(low.get(parent), low.get(x)));
+						}
+					}
+				}
+				//end while
+			}
+			//end for
+			this.numOfComps = numOfComps;
+		}
+
+		/**
+		 * Method: isSatisfiable
+		 * @param maxVar
+		 * @return false if some variable and its complement are in the same SCC
+		 */
+		private boolean isSatisfiable(int maxVar) {
+			for (int v = 1; v <= maxVar; v++) {
+				if (this.comp.get(2 * v) == this.comp.get(2 * v + 1)) return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Method: getValue
+		 *         Tarjan numbers SCCs in reverse topological order, so the literal with the smaller SCC no. comes later.
+		 * @param v variable
+		 * @return the value of variable v in the model of the last (satisfiable) formula
+		 */
+		boolean getValue(int v) {
+			return this.comp.get(2 * v) < this.comp.get(2 * v + 1);
+		}
+
+		/**
+		 * Method: ensureCapacity
+		 *         Grows the scratch buffers if this formula is bigger than any seen before on this thread.
+		 */
+		private void ensureCapacity(int numOfNodes, long numOfEdges) {
+			if (this.index.length() < numOfNodes) {
+				long size = Math.max(numOfNodes, 2 * this.index.length());
+				this.edgeStart = this.storage.allocateLongs(size + 1);
+				this.index = this.storage.allocateInts(size);
+				this.low = this.storage.allocateInts(size);
+				this.comp = this.storage.allocateInts(size);
+				this.stack = this.storage.allocateInts(size);
+				this.callNode = this.storage.allocateInts(size);
+				this.callEdge = this.storage.allocateLongs(size);
+			}
+			if (this.edgeTo.length() < numOfEdges) this.edgeTo = this.storage.allocateInts(Math.max(numOfEdges, 2 * this.edgeTo.length()));
+		}
+	}
+	//end static class Scratch
+
+	/**
+	 * Method: main
+	 *         Solves the given data files as one batch, then measures throughput by solving a batch of
+	 *         1,000,000 formulas made of copies of them.
+	 * @param args e.g. 2sat_small0*.txt
+	 */
+	public static void main(String[] args) throws IOException {
+		List<TwoSAT_ClauseList> formulas = new ArrayList<>();
+		int totalLiterals = 0;
+		for (String s : args) {
+			TwoSAT_ClauseList clauses = TwoSAT_ClauseList.load(s);
+			formulas.add(clauses);
+			totalLiterals += 2 * clauses.numOfClauses;
+		}
+
+		int[] arena = new int[totalLiterals];
+		int[] offsets = new int[formulas.size() + 1];
+		for (int f = 0; f < formulas.size(); f++) {
+			TwoSAT_ClauseList clauses = formulas.get(f);
+			System.arraycopy(clauses.literals, 0, arena, offsets[f], 2 * clauses.numOfClauses);
+			offsets[f + 1] = offsets[f] + 2 * clauses.numOfClauses;
+		}
+		Result result = solve(arena, offsets, true);
+		for (int f = 0; f < formulas.size(); f++) {
+			System.out.printf("%s: %s\n", args[f], result.isSatisfiable(f) ? "SATISFIABLE" : "UNSATISFIABLE");
+		}
+
+		/* Throughput: 1,000,000 formulas, cycling through the given ones. */
+		if (formulas.isEmpty()) return;
+		int numOfCopies = 1000000;
+		int[] bigOffsets = new int[numOfCopies + 1];
+		for (int f = 0; f < numOfCopies; f++) {
+			int src = f % formulas.size();
+			bigOffsets[f + 1] = bigOffsets[f] + offsets[src + 1] - offsets[src];
+		}
+		int[] bigArena = new int[bigOffsets[numOfCopies]];
+		for (int f = 0; f < numOfCopies; f++) {
+			int src = f % formulas.size();
+			System.arraycopy(arena, offsets[src], bigArena, bigOffsets[f], offsets[src + 1] - offsets[src]);
+		}
+		for (int run = 1; run <= 3; run++) {
+			long startTime = System.nanoTime();
+			solve(bigArena, bigOffsets, false);
+			double elapsed = (System.nanoTime() - startTime) / 1e9;
+			System.out.printf("Run %s: solved %s formulas in %.3f s (%.0f formulas/s)\n", run, numOfCopies, elapsed, numOfCopies / elapsed);
+		}
+	}
+}
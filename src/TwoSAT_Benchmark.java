@@ -0,0 +1,355 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Random;
+
+/** Class: TwoSAT_Benchmark.java
+ *
+ *  This class - timing harness comparing the solver backends.
+ *
+ *  The project is a plain javac/Eclipse project without a build tool, so this is a hand-rolled harness rather than
+ *  JMH: every case is warmed up first, then run a number of times, and the median time is reported.
+ *
+ *  Usage: java TwoSAT_Benchmark [2sat*.txt]
+ *  Without parameters, it generates satisfiable random instances (with a planted solution) of increasing size,
+ *  plus one synthetic 10M-clause store for the full-rescan evaluators, and one big instance with scrambled labels
+ *  for the cache-locality renumbering.
+ */
+public class TwoSAT_Benchmark {
+
+	private static final int WARMUP_RUNS = 3;
+	private static final int TIMED_RUNS = 5;
+
+	/**
+	 * Interface: Case
+	 *            One benchmarked piece of work.
+	 */
+	interface Case {
+		void run() throws Exception;
+	}
+
+	/**
+	 * Method: time
+	 *         Warms up, then runs the given case TIMED_RUNS times and prints the median.
+	 * @param label
+	 * @param c
+	 * @return the median time in millisecs
+	 */
+	static double time(String label, Case c) throws Exception {
+		for (int i = 0; i < WARMUP_RUNS; i++) c.run();
+		double[] ms = new double[TIMED_RUNS];
+		for (int i = 0; i < TIMED_RUNS; i++) {
+			long start = System.nanoTime();
+			c.run();
+			ms[i] = (System.nanoTime() - start) / 1e6;
+		}
+		Arrays.sort(ms);
+		System.out.printf("  %-40s median %10.3f ms  (min %.3f, max %.3f)\n", label, ms[TIMED_RUNS / 2], ms[0], ms[TIMED_RUNS - 1]);
+		return ms[TIMED_RUNS / 2];
+	}
+
+	/**
+	 * Method: generatePlanted
+	 *         Writes a random satisfiable instance: a hidden assignment is chosen first, and every clause gets
+	 *         at least one literal that is true under it.
+	 * @param n no. of variables
+	 * @param m no. of clauses
+	 * @param seed random seed
+	 * @return the name of the generated (temporary) data file
+	 * @throws IOException
+	 */
+	static String generatePlanted(int n, int m, long seed) throws IOException {
+		Random rnd = new Random(seed);
+		boolean[] hidden = new boolean[n + 1];
+		for (int v = 1; v <= n; v++) hidden[v] = rnd.nextBoolean();
+
+		File f = File.createTempFile(String.format("2sat_planted_%s_%s_", n, m), ".txt");
+		f.deleteOnExit();
+		PrintWriter out = new PrintWriter(f);
+		out.printf("%s %s\n", n, m);
+		for (int i = 0; i < m; i++) {
+			int a = 1 + rnd.nextInt(n), b = 1 + rnd.nextInt(n);
+			boolean signA = rnd.nextBoolean(), signB = rnd.nextBoolean();
+			if (hidden[a] != signA && hidden[b] != signB) signA = !signA;	//make sure the hidden assignment satisfies it
+			out.printf("%s %s\n", signA ? a : -a, signB ? b : -b);
+		}
+		out.close();
+		return f.getPath();
+	}
+
+	/**
+	 * Method: generateScrambled
+	 *         Writes a random satisfiable instance with good locality (every clause links two variables whose labels
+	 *         differ by at most 16), then hides the locality by randomly permuting the variable labels. This mimics
+	 *         data files whose labels are arbitrary IDs.
+	 * @param n no. of variables
+	 * @param m no. of clauses
+	 * @param seed random seed
+	 * @return the name of the generated (temporary) data file
+	 * @throws IOException
+	 */
+	static String generateScrambled(int n, int m, long seed) throws IOException {
+		Random rnd = new Random(seed);
+		boolean[] hidden = new boolean[n + 1];
+		for (int v = 1; v <= n; v++) hidden[v] = rnd.nextBoolean();
+		int[] label = new int[n + 1];
+		for (int v = 1; v <= n; v++) label[v] = v;
+		for (int v = n; v > 1; v--) {	//Fisher-Yates shuffle
+			int w = 1 + rnd.nextInt(v);
+			int tmp = label[v];
+			label[v] = label[w];
+			label[w] = tmp;
+		}
+
+		File f = File.createTempFile(String.format("2sat_scrambled_%s_%s_", n, m), ".txt");
+		f.deleteOnExit();
+		PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(f), 1 << 16));
+		out.printf("%s %s\n", n, m);
+		for (int i = 0; i < m; i++) {
+			int a = 1 + rnd.nextInt(n);
+			int b = 1 + (a - 1 + 1 + rnd.nextInt(16)) % n;
+			boolean signA = rnd.nextBoolean(), signB = rnd.nextBoolean();
+			if (hidden[a] != signA && hidden[b] != signB) signA = !signA;	//make sure the hidden assignment satisfies it
+			out.printf("%s %s\n", signA ? label[a] : -label[a], signB ? label[b] : -label[b]);
+		}
+		out.close();
+		return f.getPath();
+	}
+
+	/**
+	 * Method: benchmarkWalk
+	 *         Object layout (papadimitriou()) vs. packed layout (papadimitriouPacked()) vs. one packed walk per
+	 *         independent component (papadimitriouByComponents()) on the same instance.
+	 *         Skipped for unsatisfiable instances (see isUnsatisfiable()).
+	 * @param fileName
+	 */
+	static void benchmarkWalk(String fileName) throws Exception {
+		System.out.printf("==========================================================\nRandom walk on %s\n", fileName);
+		if (isUnsatisfiable(fileName)) return;
+		final TwoSAT_Papadimitriou twoSat = new TwoSAT_Papadimitriou(fileName, false);
+		time("object layout: papadimitriou()", new Case() {
+			@Override
+			public void run() {
+				twoSat.randomizeVariables();	//otherwise every run after the first starts from a satisfying assignment
+				twoSat.papadimitriou();
+			}
+		});
+		time("packed layout: papadimitriouPacked()", new Case() {
+			@Override
+			public void run() {
+				twoSat.papadimitriouPacked();
+			}
+		});
+		TwoSAT_Components components = new TwoSAT_Components(twoSat.toClauseStore());
+		System.out.printf("  independent components: %s (largest has %s clauses)\n", components.getNumOfComps(), components.getLargestComp());
+		time("components: papadimitriouByComponents()", new Case() {
+			@Override
+			public void run() {
+				twoSat.papadimitriouByComponents();
+			}
+		});
+	}
+
+	/**
+	 * Method: benchmarkStrategies
+	 *         Flips-to-solution of every pick strategy (see TwoSAT_PickStrategy.java) on the same (pruned) clauses,
+	 *         over a number of seeds. Skipped for unsatisfiable instances (see isUnsatisfiable()).
+	 * @param fileName
+	 * @param numOfSeeds
+	 */
+	static void benchmarkStrategies(String fileName, int numOfSeeds) throws Exception {
+		System.out.printf("==========================================================\nPick strategies on %s\n", fileName);
+		if (isUnsatisfiable(fileName)) return;
+		TwoSAT_ClauseStore store = new TwoSAT_Papadimitriou(fileName, false).toClauseStore();
+		TwoSAT_PickStrategy[] strategies = {
+				new TwoSAT_PickStrategy.RandomPick(),
+				new TwoSAT_PickStrategy.WalkSAT(0.5),
+				new TwoSAT_PickStrategy.WalkSAT(0.2),
+				new TwoSAT_PickStrategy.ProbSAT(1, 2.3)};
+		for (TwoSAT_PickStrategy strategy : strategies) {
+			long[] flips = new long[numOfSeeds];
+			double[] ms = new double[numOfSeeds];
+			int solved = 0;
+			for (int seed = 1; seed <= numOfSeeds; seed++) {
+				long start = System.nanoTime();
+				TwoSAT_PackedWalk walk = new TwoSAT_PackedWalk(store, seed);
+				walk.setStrategy(strategy);
+				if (walk.run() && walk.isModel()) solved++;
+				ms[seed - 1] = (System.nanoTime() - start) / 1e6;
+				flips[seed - 1] = walk.getNumOfFlips();
+			}
+			Arrays.sort(flips);
+			Arrays.sort(ms);
+			System.out.printf("  %-30s solved %s/%s, flips median %12s (max %12s), time median %10.3f ms\n", strategy,
+					solved, numOfSeeds, flips[numOfSeeds / 2], flips[numOfSeeds - 1], ms[numOfSeeds / 2]);
+		}
+	}
+
+	/**
+	 * Method: isUnsatisfiable
+	 *         On an unsatisfiable instance, the random walk never stops early: it runs all log2(n) restarts of
+	 *         2 * n^2 flips each, which the object layout does not finish in any reasonable time on the sample
+	 *         files. The SCC reduction (TwoSAT_ImplicationGraph) decides the instance first, so that the walk
+	 *         benchmarks can skip it.
+	 * @param fileName
+	 * @return true (and says so) if the instance is unsatisfiable
+	 */
+	static boolean isUnsatisfiable(String fileName) throws IOException {
+		if (new TwoSAT_ImplicationGraph(TwoSAT_ClauseList.load(fileName)).isSatisfiable()) return false;
+		System.out.println("  skipped: unsatisfiable, so the walk would run out its whole budget");
+		return true;
+	}
+
+	/**
+	 * Method: benchmarkRescan
+	 *         Full rescan of the same (pruned) clauses: object layout (allClausesAreTrue()) vs. TwoSAT_BulkEvaluator.
+	 * @param fileName
+	 */
+	static void benchmarkRescan(String fileName) throws Exception {
+		System.out.printf("==========================================================\nFull rescan on %s\n", fileName);
+		final TwoSAT_Papadimitriou twoSat = new TwoSAT_Papadimitriou(fileName, false);
+		TwoSAT_ClauseStore store = twoSat.toClauseStore();
+		final TwoSAT_BulkEvaluator evaluator = new TwoSAT_BulkEvaluator(store);
+		final long[] bits = store.newAssignment();
+		time("object full rescan: allClausesAreTrue()", new Case() {
+			@Override
+			public void run() {
+				twoSat.allClausesAreTrue();
+			}
+		});
+		time("bulk full rescan: countFalse()", new Case() {
+			@Override
+			public void run() {
+				evaluator.countFalse(bits);
+			}
+		});
+	}
+
+	/**
+	 * Method: benchmarkRescan
+	 *         Per-clause scalar loop vs. TwoSAT_BulkEvaluator on a random store with m clauses. The bulk rescan only
+	 *         gets ahead with more than one core (and m above its parallel threshold).
+	 * @param m no. of clauses
+	 */
+	static void benchmarkRescan(int m) throws Exception {
+		System.out.printf("==========================================================\nFull rescan of %s random clauses (%s cores)\n",
+				m, Runtime.getRuntime().availableProcessors());
+		Random rnd = new Random(m);
+		int[] signedLiterals = new int[2 * m];
+		for (int i = 0; i < signedLiterals.length; i++) signedLiterals[i] = (1 + rnd.nextInt(m)) * (rnd.nextBoolean() ? 1 : -1);
+		final TwoSAT_ClauseStore store = new TwoSAT_ClauseStore(signedLiterals, m);
+		final TwoSAT_BulkEvaluator evaluator = new TwoSAT_BulkEvaluator(store);
+		final long[] bits = store.newAssignment();
+		for (int w = 0; w < bits.length; w++) bits[w] = rnd.nextLong();
+
+		final int[] sink = new int[1];	//keeps the JIT from dropping the scalar loop
+		time("scalar loop: isSatisfied() per clause", new Case() {
+			@Override
+			public void run() {
+				int count = 0;
+				for (int c = 0; c < store.numOfClauses; c++) {
+					if (!store.isSatisfied(bits, c)) count++;
+				}
+				sink[0] += count;
+			}
+		});
+		time("bulk: countFalse()", new Case() {
+			@Override
+			public void run() {
+				sink[0] += evaluator.countFalse(bits);
+			}
+		});
+	}
+
+	/**
+	 * Method: benchmarkRenumbering
+	 *         SCC reduction and full rescan on the same clauses, in the original numbering vs. after the cache-locality
+	 *         renumbering (see TwoSAT_Renumbering.java).
+	 * @param fileName
+	 */
+	static void benchmarkRenumbering(String fileName) throws Exception {
+		System.out.printf("==========================================================\nRenumbering on %s\n", fileName);
+		final TwoSAT_ClauseList clauses = TwoSAT_ClauseList.load(fileName);
+		final TwoSAT_Renumbering renumbering = new TwoSAT_Renumbering(clauses);
+		System.out.printf("  average label distance per clause: %.1f before, %.1f after\n",
+				TwoSAT_Renumbering.bandwidth(clauses.literals, clauses.numOfClauses),
+				TwoSAT_Renumbering.bandwidth(renumbering.literals, renumbering.numOfClauses));
+
+		time("renumbering itself", new Case() {
+			@Override
+			public void run() {
+				new TwoSAT_Renumbering(clauses);
+			}
+		});
+		time("SCC, original labels", new Case() {
+			@Override
+			public void run() {
+				new TwoSAT_ImplicationGraph(clauses.literals, clauses.numOfClauses);
+			}
+		});
+		time("SCC, renumbered", new Case() {
+			@Override
+			public void run() {
+				new TwoSAT_ImplicationGraph(renumbering.literals, renumbering.numOfClauses);
+			}
+		});
+		time("SCC incl. renumbering: solveRenumbered()", new Case() {
+			@Override
+			public void run() {
+				TwoSAT_SCC.solveRenumbered(clauses);
+			}
+		});
+
+		/* Rescan with the scalar per-clause loop: its bit lookups follow the clause order, like the walk's. */
+		final TwoSAT_ClauseStore before = new TwoSAT_ClauseStore(clauses);
+		final TwoSAT_ClauseStore after = new TwoSAT_ClauseStore(renumbering.literals, renumbering.numOfClauses);
+		final long[] bits = before.newAssignment();
+		Random rnd = new Random(1);
+		for (int w = 0; w < bits.length; w++) bits[w] = rnd.nextLong();
+		final int[] sink = new int[1];	//keeps the JIT from dropping the loops
+		time("full rescan, original labels", new Case() {
+			@Override
+			public void run() {
+				int count = 0;
+				for (int c = 0; c < before.numOfClauses; c++) {
+					if (!before.isSatisfied(bits, c)) count++;
+				}
+				sink[0] += count;
+			}
+		});
+		time("full rescan, renumbered", new Case() {
+			@Override
+			public void run() {
+				int count = 0;
+				for (int c = 0; c < after.numOfClauses; c++) {
+					if (!after.isSatisfied(bits, c)) count++;
+				}
+				sink[0] += count;
+			}
+		});
+	}
+
+	/**
+	 * Method: main
+	 * @param args
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0) {
+			for (String s : args) benchmarkWalk(s);
+			for (String s : args) benchmarkStrategies(s, 11);
+			for (String s : args) benchmarkRescan(s);
+			for (String s : args) benchmarkRenumbering(s);
+			return;
+		}
+
+		/* Dense enough (10 clauses per variable) that pruning leaves most clauses in place. */
+		for (int n = 100; n <= 400; n *= 2) benchmarkWalk(generatePlanted(n, 10 * n, n));
+		for (int n = 1000; n <= 100000; n *= 10) benchmarkStrategies(generatePlanted(n, 3 * n, n), 11);
+		benchmarkRescan(generatePlanted(100000, 1000000, 0));
+		benchmarkRescan(10000000);
+		benchmarkRenumbering(generateScrambled(1 << 22, 1 << 22, 0));
+	}
+}
@@ -0,0 +1,163 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/** Class: TwoSAT_BulkEvaluator.java
+ *
+ *  This class - full-rescan evaluation of every clause in a TwoSAT_ClauseStore against a bit-packed assignment.
+ *  Used where the random walk cannot work incrementally: the initial evaluation after each restart, the final
+ *  verification of a model, and checking many candidate assignments at once.
+ *
+ *  The speedup over the per-clause loop comes from parallelism only: big stores are split into slices that are
+ *  evaluated on the common ForkJoinPool. On one core, evaluateWords() runs as fast as TwoSAT_ClauseStore.isSatisfied()
+ *  in a loop (the random lookups into the assignment dominate), as TwoSAT_Benchmark.benchmarkRescan(m) shows.
+ *
+ *  Results go into a "false mask" with one bit per clause (bit i of word w set = clause 64 * w + i is false), so that
+ *  every slice writes whole words of its own, counting is a Long.bitCount per word, and collecting the false clauses
+ *  only visits the set bits.
+ */
+public class TwoSAT_BulkEvaluator {
+
+	private static final int PARALLEL_THRESHOLD = 1 << 18;	//stores with fewer clauses than this are evaluated on the calling thread
+	private static final int WORDS_PER_SLICE = 1 << 12;		//no. of mask words (64 clauses each) per parallel task
+
+	private TwoSAT_ClauseStore store;	//the clauses
+	private long[] falseMask;			//bit c is set if clause c was false in the last evaluation
+
+	/**
+	 * 1-arg constructor
+	 * @param store
+	 */
+	public TwoSAT_BulkEvaluator(TwoSAT_ClauseStore store) {
+		this.store = store;
+		this.falseMask = new long[(store.numOfClauses + 63) >>> 6];
+	}
+
+	/**
+	 * Method: countFalse
+	 *         Evaluates every clause and remembers which ones are false.
+	 * @param bits assignment bitset
+	 * @return the no. of false clauses
+	 */
+	public int countFalse(final long[] bits) {
+		int numOfWords = this.falseMask.length;
+		if (this.store.numOfClauses < PARALLEL_THRESHOLD) return evaluateWords(bits, this.falseMask, 0, numOfWords);
+
+		List<Callable<Integer>> slices = new ArrayList<>();
+		for (int from = 0; from < numOfWords; from += WORDS_PER_SLICE) {
+			final int wFrom = from, wTo = Math.min(numOfWords, from + WORDS_PER_SLICE);
+			slices.add(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					return evaluateWords(bits, falseMask, wFrom, wTo);
+				}
+			});
+		}
+		int count = 0;
+		for (Future<Integer> f : ForkJoinPool.commonPool().invokeAll(slices)) count += get(f);
+		return count;
+	}
+
+	/**
+	 * Method: collectFalse
+	 *         Evaluates every clause and collects the false ones.
+	 * @param bits         assignment bitset
+	 * @param falseClauses receives the indices of the false clauses, in increasing order
+	 * @param falsePos     receives the position of each clause in falseClauses, or -1 if the clause is true
+	 * @return the no. of false clauses
+	 */
+	public int collectFalse(long[] bits, TwoSAT_Storage.Ints falseClauses, TwoSAT_Storage.Ints falsePos) {
+		int count = countFalse(bits);
+		falsePos.fill(-1);
+		int k = 0;
+		for (int w = 0; w < this.falseMask.length && k < count; w++) {
+			long mask = this.falseMask[w];
+			while (mask != 0) {
+				int c = (w << 6) + Long.numberOfTrailingZeros(mask);
+				falsePos.set(c, k);
+				falseClauses.set(k++, c);
+				mask &= mask - 1;	//clear the lowest set bit
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Method: isModel
+	 *         Final verification of an assignment.
+	 * @param bits assignment bitset
+	 * @return true if every clause is true under the given assignment
+	 */
+	public boolean isModel(long[] bits) {
+		return countFalse(bits) == 0;
+	}
+
+	/**
+	 * Method: countFalse
+	 *         Checks many candidate assignments at once, in parallel (one task per candidate).
+	 * @param candidates assignment bitsets
+	 * @return the no. of false clauses under each candidate
+	 */
+	public int[] countFalse(final long[][] candidates) {
+		List<Callable<Integer>> tasks = new ArrayList<>();
+		for (final long[] bits : candidates) {
+			tasks.add(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					long[] scratch = new long[(store.numOfClauses + 63) >>> 6];	//the shared falseMask belongs to countFalse(long[])
+					return evaluateWords(bits, scratch, 0, scratch.length);
+				}
+			});
+		}
+		int[] counts = new int[candidates.length];
+		List<Future<Integer>> results = ForkJoinPool.commonPool().invokeAll(tasks);
+		for (int i = 0; i < counts.length; i++) counts[i] = get(results.get(i));
+		return counts;
+	}
+
+	/**
+	 * Method: evaluateWords
+	 *         The kernel. Fills mask words wFrom ... wTo - 1, i.e. evaluates clauses 64 * wFrom ... 64 * wTo - 1.
+	 * @param bits  assignment bitset
+	 * @param mask  receives the false mask
+	 * @param wFrom first mask word
+	 * @param wTo   one past the last mask word
+	 * @return the no. of false clauses in the range
+	 */
+	int evaluateWords(long[] bits, long[] mask, int wFrom, int wTo) {
+		TwoSAT_Storage.Ints lit1 = this.store.lit1, lit2 = this.store.lit2;
+		int m = this.store.numOfClauses;
+		int count = 0;
+		for (int w = wFrom; w < wTo; w++) {
+			int base = w << 6;
+			int len = Math.min(64, m - base);
+			long word = 0;
+			for (int i = 0; i < len; i++) {
+				int a = lit1.get(base + i), b = lit2.get(base + i);
+				long t = ((bits[a >>> 7] >>> (a >>> 1)) ^ a) | ((bits[b >>> 7] >>> (b >>> 1)) ^ b);
+				word |= (~t & 1L) << i;
+			}
+			mask[w] = word;
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * Method: get
+	 *         Future.get() for tasks that cannot throw checked exceptions.
+	 */
+	private static int get(Future<Integer> f) {
+		try {
+			return f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+}
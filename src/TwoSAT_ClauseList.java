@@ -0,0 +1,239 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.StringTokenizer;
+
+/** Class: TwoSAT_ClauseList.java
+ *
+ *  This class - a flat, primitive list of 2-SAT clauses as read from a data file.
+ *
+ *  Every clause is stored as two consecutive ints in the literals array, using the same signed labels as the
+ *  data file. For example, clause i = "-16808 75250" is stored as literals[2*i] = -16808, literals[2*i+1] = 75250.
+ *
+ *  Also hosts the byte-level parsing routines shared by the loaders that work on raw byte buffers
+ *  (see TwoSAT_GzipPipeline.java and TwoSAT_ParallelLoader.java) rather than on a line-by-line Reader.
+ */
+public class TwoSAT_ClauseList {
+
+	static final long PARALLEL_LOAD_THRESHOLD = 64L << 20;	//plain text files at least this big (64 MB) are loaded in parallel
+
+	int numOfVars;		//total number of variables, as given on the first line of the file
+	int numOfClauses;	//total number of clauses
+	int[] literals;		//two signed literals per clause, in file order
+
+	/**
+	 * 3-arg constructor
+	 * @param numOfVars
+	 * @param numOfClauses
+	 * @param literals two signed literals per clause. Must hold at least 2 * numOfClauses ints.
+	 */
+	TwoSAT_ClauseList(int numOfVars, int numOfClauses, int[] literals) {
+		this.numOfVars = numOfVars;
+		this.numOfClauses = numOfClauses;
+		this.literals = literals;
+	}
+
+	/**
+	 * Method: isGzip
+	 * @param fileName
+	 * @return true if the given file should be read through the gzip pipeline.
+	 */
+	static boolean isGzip(String fileName) {
+		return fileName.endsWith(".gz");
+	}
+
+	/**
+	 * Method: isBulkLoad
+	 * @param fileName
+	 * @return true if the given file should be loaded in memory by one of the multi-threaded loaders
+	 *         (i.e. it is gzip-compressed or it is a huge plain text file), rather than read line by line.
+	 */
+	static boolean isBulkLoad(String fileName) {
+		return isGzip(fileName) || new File(fileName).length() >= PARALLEL_LOAD_THRESHOLD;
+	}
+
+	/**
+	 * Method: load
+	 *         Reads all clauses from the given data file. Gzip-compressed files (*.gz) are inflated and parsed
+	 *         on the fly, huge plain text files are parsed in parallel, and everything else is read sequentially.
+	 * @param fileName
+	 * @return the list of clauses
+	 * @throws IOException if the file cannot be read, has no header line, or has fewer clause lines than the header says
+	 * @throws NumberFormatException if a line holds something other than numbers, or a clause line only one literal
+	 */
+	static TwoSAT_ClauseList load(String fileName) throws IOException {
+		if (isGzip(fileName)) return new TwoSAT_GzipPipeline(fileName).load();
+		if (new File(fileName).length() >= PARALLEL_LOAD_THRESHOLD) return new TwoSAT_ParallelLoader(fileName).load();
+		return readText(fileName);
+	}
+
+	/**
+	 * Method: readText
+	 *         Sequential reader. Reads the file exactly the way TwoSAT_SCC and TwoSAT_Papadimitriou do.
+	 * @param fileName
+	 * @return the list of clauses
+	 * @throws IOException see load()
+	 */
+	static TwoSAT_ClauseList readText(String fileName) throws IOException {
+		BufferedReader rd = new BufferedReader(new FileReader(new File(fileName)));
+		try {
+			String line = rd.readLine();
+			if (line == null || line.trim().isEmpty()) throw new IOException(fileName + ": missing header line");
+			StringTokenizer tokenizer = new StringTokenizer(line);
+			int numOfVars = Integer.parseInt(tokenizer.nextToken());
+			int numOfClauses = tokenizer.hasMoreTokens() ? Integer.parseInt(tokenizer.nextToken()) : numOfVars;
+
+			int[] literals = new int[2 * numOfClauses];
+			for (int i = 0; i < numOfClauses; i++) {
+				line = rd.readLine();
+				if (line == null) throw new IOException(String.format("%s: expected %s clauses but found only %s", fileName, numOfClauses, i));
+				tokenizer = new StringTokenizer(line);
+				if (tokenizer.countTokens() < 2) throw new NumberFormatException(fileName + ": clause line with fewer than two literals: " + line);
+				literals[2 * i] = Integer.parseInt(tokenizer.nextToken());
+				literals[2 * i + 1] = Integer.parseInt(tokenizer.nextToken());
+			}
+			return new TwoSAT_ClauseList(numOfVars, numOfClauses, literals);
+		} finally {
+			rd.close();
+		}
+	}
+
+	/**
+	 * Method: parseHeader
+	 *         Parses the first line of a data file, e.g. "100000" or "8 12".
+	 * @param buf  buffer holding the raw bytes of the line
+	 * @param from index of the first byte of the line
+	 * @param to   index one past the last byte of the line
+	 * @return a 2-element array: {numOfVars, numOfClauses}. If the line only contains one number,
+	 *         the no. of clauses equals the no. of variables.
+	 * @throws IOException if the line is empty (e.g. because the file is)
+	 */
+	static int[] parseHeader(byte[] buf, int from, int to) throws IOException {
+		IntBlock block = new IntBlock(2);
+		parseLines(buf, from, to, block, 1);
+		if (block.size == 0) throw new IOException("Missing header line");
+		if (block.size == 1) return new int[] {block.ints[0], block.ints[0]};
+		return new int[] {block.ints[0], block.ints[1]};
+	}
+
+	/**
+	 * Method: parseLines
+	 *         Parses clause lines from raw bytes and appends two literals per line to the given block.
+	 *         Blank lines are skipped, and anything after the second number on a line is ignored, just like
+	 *         the StringTokenizer-based readers do. Numbers outside the int range are rejected, as by Integer.parseInt().
+	 * @param buf   buffer holding the raw bytes
+	 * @param from  index of the first byte to parse. Must be at the start of a line.
+	 * @param to    index one past the last byte to parse. Must be at the end of a line (or the end of the file).
+	 * @param block block to append the literals to
+	 */
+	static void parseLines(byte[] buf, int from, int to, IntBlock block) {
+		parseLines(buf, from, to, block, 2);
+	}
+
+	/**
+	 * Method: parseLines
+	 * @param buf
+	 * @param from
+	 * @param to
+	 * @param block
+	 * @param minTokens the minimum no. of numbers a non-blank line must contain
+	 */
+	private static void parseLines(byte[] buf, int from, int to, IntBlock block, int minTokens) {
+		int i = from;
+		while (i < to) {
+			int tokens = 0;
+			int first = 0;
+
+			/* Read at most two numbers from this line, then skip whatever is left of it. */
+			while (i < to && buf[i] != '\n') {
+				byte b = buf[i];
+				if (b == ' ' || b == '\t' || b == '\r') {
+					i++;
+					continue;
+				}
+				if (tokens == 2) {
+					while (i < to && buf[i] != '\n') i++;
+					break;
+				}
+
+				boolean negative = (b == '-');
+				if (b == '-' || b == '+') i++;
+				int start = i;
+				long value = 0;
+				long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;	//the range Integer.parseInt() accepts
+				while (i < to && buf[i] >= '0' && buf[i] <= '9') {
+					value = value * 10 + (buf[i] - '0');
+					if (value > limit) throw new NumberFormatException("Number out of int range near byte offset " + start);
+					i++;
+				}
+				if (i == start || (i < to && buf[i] != ' ' && buf[i] != '\t' && buf[i] != '\r' && buf[i] != '\n')) {
+					throw new NumberFormatException("Malformed number near byte offset " + start);
+				}
+				int number = (int) (negative ? -value : value);
+
+				if (tokens == 0) first = number;
+				else block.add(first, number);
+				tokens++;
+			}
+			//end while (current line)
+
+			if (tokens == 1) {
+				if (minTokens > 1) throw new NumberFormatException("Clause line with only one literal near byte offset " + i);
+				block.add(first);
+			}
+			i++;	//skip the newline
+		}
+		//end while
+	}
+
+	/**
+	 * Class: IntBlock
+	 *        A growable block of primitive ints. Each parser thread fills its own block.
+	 */
+	static class IntBlock {
+		int[] ints;
+		int size;
+
+		/**
+		 * 1-arg constructor
+		 * @param initialCapacity
+		 */
+		IntBlock(int initialCapacity) {
+			this.ints = new int[Math.max(2, initialCapacity)];
+			this.size = 0;
+		}
+
+		/**
+		 * Method: add
+		 * @param value
+		 */
+		void add(int value) {
+			if (this.size == this.ints.length) grow();
+			this.ints[this.size++] = value;
+		}
+
+		/**
+		 * Method: add
+		 *         Appends one clause (two literals).
+		 * @param lit1
+		 * @param lit2
+		 */
+		void add(int lit1, int lit2) {
+			if (this.size + 2 > this.ints.length) grow();
+			this.ints[this.size++] = lit1;
+			this.ints[this.size++] = lit2;
+		}
+
+		/**
+		 * Method: grow
+		 *         Doubles the capacity of this block.
+		 */
+		private void grow() {
+			int[] bigger = new int[this.ints.length * 2];
+			System.arraycopy(this.ints, 0, bigger, 0, this.size);
+			this.ints = bigger;
+		}
+	}
+	//end static class IntBlock
+}
@@ -0,0 +1,217 @@
+/** Class: TwoSAT_ClauseNormalizer.java
+ *
+ *  This class - load-time normalization stage for 2-SAT clauses.
+ *
+ *  Every clause is canonicalized into a packed long: the smaller of its two literals goes into the upper 32 bits
+ *  and the bigger one into the lower 32 bits. So "a b" and its mirror "b a" get the same key.
+ *  The keys are deduplicated through an open-addressing hash set of primitive longs, so no Long/Clause objects
+ *  are created per clause.
+ *
+ *  A clause is dropped if:
+ *  1) it is a tautology such as "x -x", which is true under every assignment, or
+ *  2) it is a duplicate (or a mirrored duplicate) of a clause that was already admitted.
+ *
+ *  Dropping these clauses does not change whether the formula is satisfiable, but it saves redundant Edge objects
+ *  in TwoSAT_SCC and redundant clause re-evaluations in TwoSAT_Papadimitriou.
+ */
+public class TwoSAT_ClauseNormalizer {
+
+	private LongHashSet seen;		//canonical keys of all admitted clauses
+	private int numOfAdmitted;		//no. of clauses kept
+	private int numOfDuplicates;	//no. of clauses dropped because they were seen before (either orientation)
+	private int numOfTautologies;	//no. of clauses dropped because they were always true
+
+	/**
+	 * 1-arg constructor
+	 * @param expectedClauses the no. of clauses expected. Used to size the hash set.
+	 */
+	public TwoSAT_ClauseNormalizer(int expectedClauses) {
+		this.seen = new LongHashSet(expectedClauses);
+	}
+
+	/**
+	 * Method: key
+	 * @param lit1 first literal of the clause
+	 * @param lit2 second literal of the clause
+	 * @return the canonical key of the clause (lit1 OR lit2). The order of the literals does not matter.
+	 */
+	static long key(int lit1, int lit2) {
+		int lo = Math.min(lit1, lit2);
+		int hi = Math.max(lit1, lit2);
+		return ((long) lo << 32) | (hi & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Method: admit
+	 *         Decides whether the clause (lit1 OR lit2) should be kept.
+	 * @param lit1
+	 * @param lit2
+	 * @return true if the clause is new and not a tautology; false if it should be dropped.
+	 */
+	public boolean admit(int lit1, int lit2) {
+		if (lit1 == -lit2) {
+			this.numOfTautologies++;
+			return false;
+		}
+		if (!this.seen.add(key(lit1, lit2))) {
+			this.numOfDuplicates++;
+			return false;
+		}
+		this.numOfAdmitted++;
+		return true;
+	}
+
+	/**
+	 * Method: normalize
+	 *         Runs the whole clause list through this stage.
+	 * @param clauses
+	 * @return a new clause list holding only the admitted clauses, in their original order
+	 */
+	public TwoSAT_ClauseList normalize(TwoSAT_ClauseList clauses) {
+		int[] kept = new int[2 * clauses.numOfClauses];
+		int size = 0;
+		for (int i = 0; i < clauses.numOfClauses; i++) {
+			int lit1 = clauses.literals[2 * i];
+			int lit2 = clauses.literals[2 * i + 1];
+			if (admit(lit1, lit2)) {
+				kept[size++] = lit1;
+				kept[size++] = lit2;
+			}
+		}
+		if (size < kept.length) {
+			int[] trimmed = new int[size];
+			System.arraycopy(kept, 0, trimmed, 0, size);
+			kept = trimmed;
+		}
+		return new TwoSAT_ClauseList(clauses.numOfVars, size / 2, kept);
+	}
+
+	public int getNumOfAdmitted() {
+		return this.numOfAdmitted;
+	}
+
+	public int getNumOfDuplicates() {
+		return this.numOfDuplicates;
+	}
+
+	public int getNumOfTautologies() {
+		return this.numOfTautologies;
+	}
+
+	/**
+	 * Method: toString
+	 * @return statistics on what was removed
+	 */
+	@Override
+	public String toString() {
+		return String.format("Normalization kept %s clauses, removed %s duplicate (incl. mirrored) clauses and %s tautologies",
+				this.numOfAdmitted, this.numOfDuplicates, this.numOfTautologies);
+	}
+
+	/**
+	 * Class: LongHashSet
+	 *        Open-addressing (linear probing) hash set of primitive longs. Only supports adding.
+	 */
+	static class LongHashSet {
+		private static final long EMPTY = 0L;	//marks a free slot. The key 0 itself is tracked by a separate flag.
+		static final int MAX_CAPACITY = 1 << 30;	//the biggest power-of-two table a long[] can have
+
+		private long[] table;
+		private int size;
+		private int mask;
+		private boolean containsEmptyKey;
+
+		/**
+		 * 1-arg constructor
+		 * @param expectedSize
+		 */
+		LongHashSet(int expectedSize) {
+			int capacity = capacityFor(expectedSize);
+			this.table = new long[capacity];
+			this.mask = capacity - 1;
+		}
+
+		/**
+		 * Method: capacityFor
+		 *         Computed in long: doubling an expected size above 2^29 overflows an int.
+		 * @param expectedSize
+		 * @return the smallest power of two that keeps the load factor <= 0.5, but at most MAX_CAPACITY
+		 */
+		static int capacityFor(int expectedSize) {
+			long capacity = Long.highestOneBit(Math.max(4L, expectedSize) * 2 - 1) << 1;
+			return (int) Math.min(capacity, MAX_CAPACITY);
+		}
+
+		/**
+		 * Method: add
+		 * @param key
+		 * @return true if the key was not yet in the set
+		 */
+		boolean add(long key) {
+			if (key == EMPTY) {
+				if (this.containsEmptyKey) return false;
+				this.containsEmptyKey = true;
+				return true;
+			}
+			int i = hash(key) & this.mask;
+			while (this.table[i] != EMPTY) {
+				if (this.table[i] == key) return false;
+				i = (i + 1) & this.mask;
+			}
+			this.table[i] = key;
+			this.size++;
+			if (this.size > this.table.length >>> 1) {
+				if (this.table.length < MAX_CAPACITY) rehash();
+				else if (this.size == this.table.length - 1) {	//one slot must stay free, or probing would never end
+					throw new IllegalStateException("LongHashSet is full: " + this.size + " keys");
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Method: contains
+		 * @param key
+		 * @return true if the key is in the set
+		 */
+		boolean contains(long key) {
+			if (key == EMPTY) return this.containsEmptyKey;
+			int i = hash(key) & this.mask;
+			while (this.table[i] != EMPTY) {
+				if (this.table[i] == key) return true;
+				i = (i + 1) & this.mask;
+			}
+			return false;
+		}
+
+		/**
+		 * Method: rehash
+		 *         Doubles the table. Once it has MAX_CAPACITY slots, it stays that size and fills up beyond 0.5.
+		 */
+		private void rehash() {
+			long[] old = this.table;
+			this.table = new long[old.length * 2];
+			this.mask = this.table.length - 1;
+			for (long key : old) {
+				if (key == EMPTY) continue;
+				int i = hash(key) & this.mask;
+				while (this.table[i] != EMPTY) i = (i + 1) & this.mask;
+				this.table[i] = key;
+			}
+		}
+
+		/**
+		 * Method: hash
+		 *         64-bit finalizer (from MurmurHash3), so that keys differing only in the upper half spread well.
+		 */
+		static int hash(long key) {
+			key ^= key >>> 33;
+			key *= 0xff51afd7ed558ccdL;
+			key ^= key >>> 33;
+			key *= 0xc4ceb9fe1a85ec53L;
+			key ^= key >>> 33;
+			return (int) key;
+		}
+	}
+	//end static class LongHashSet
+}
@@ -0,0 +1,193 @@
+/** Class: TwoSAT_ClauseStore.java
+ *
+ *  This class - struct-of-arrays clause store for the packed engines.
+ *
+ *  Instead of Clause objects pointing at Variable objects, every clause is a pair of int literal codes kept in two
+ *  parallel arrays (lit1[c], lit2[c]). A literal code packs the variable and its sign into one int:
+ *
+ *      code = 2 * variable + (negated ? 1 : 0)
+ *
+ *  e.g. the literal -16808 has code 33617, and 75250 has code 150500. A truth assignment is a long[] bitset
+ *  indexed by variable, so the value of a literal is a single bit test (see isTrue()).
+ *
+ *  Also keeps, for each variable, the list of clauses it occurs in (compressed into one int array), so that flipping
+ *  a variable only has to re-evaluate the clauses that contain it.
+ *
+ *  The clause and occurrence arrays come from a TwoSAT_Storage: the heap, or the arena of a TwoSAT_OffHeapFormula.
+ *  Assignments stay on the heap either way; they take one bit per variable.
+ */
+public class TwoSAT_ClauseStore {
+
+	static final int MAX_VARIABLE = (1 << 30) - 1;	//the biggest variable whose literal codes (up to 2 * variable + 1) fit in an int
+
+	int maxVar;			//the biggest variable label. Variables are indexed from 0 to maxVar (0 is normally unused).
+	int numOfClauses;	//total number of clauses
+	TwoSAT_Storage storage;	//where the arrays below (and the walk's per-clause arrays) are allocated
+	TwoSAT_Storage.Ints lit1, lit2;	//literal codes of the two literals of each clause
+	TwoSAT_Storage.Longs occStart;	//clauses containing variable v are occ[occStart[v]] ... occ[occStart[v + 1] - 1]
+	TwoSAT_Storage.Ints occ;	//clause indices, grouped by variable
+	int numOfActiveVars;	//no. of variables that occur in at least one clause
+
+	/**
+	 * 2-arg constructor
+	 * @param signedLiterals two signed literals per clause (same format as TwoSAT_ClauseList.literals)
+	 * @param numOfClauses
+	 * @throws IllegalArgumentException if a variable is beyond MAX_VARIABLE
+	 */
+	TwoSAT_ClauseStore(int[] signedLiterals, int numOfClauses) {
+		this.numOfClauses = numOfClauses;
+		this.storage = TwoSAT_Storage.HEAP;
+		this.lit1 = this.storage.allocateInts(numOfClauses);
+		this.lit2 = this.storage.allocateInts(numOfClauses);
+		this.maxVar = 0;
+		for (int c = 0; c < numOfClauses; c++) {
+			this.lit1.set(c, code(checkRange(signedLiterals[2 * c])));
+			this.lit2.set(c, code(checkRange(signedLiterals[2 * c + 1])));
+			this.maxVar = Math.max(this.maxVar, Math.max(this.lit1.get(c), this.lit2.get(c)) >>> 1);
+		}
+		buildOccurrences();
+	}
+
+	/**
+	 * 1-arg constructor
+	 * @param clauses
+	 */
+	TwoSAT_ClauseStore(TwoSAT_ClauseList clauses) {
+		this(clauses.literals, clauses.numOfClauses);
+	}
+
+	/**
+	 * 1-arg constructor: off-heap. Uses the formula's clauses as they are, and puts the occurrence lists in the
+	 * formula's arena, so they are released when the formula is closed.
+	 * @param formula
+	 */
+	TwoSAT_ClauseStore(TwoSAT_OffHeapFormula formula) {
+		this.numOfClauses = (int) formula.numOfClauses;	//clause indices fit in an int (the header's clause count does)
+		this.storage = formula.getStorage();
+		this.lit1 = formula.lit1;
+		this.lit2 = formula.lit2;
+		this.maxVar = formula.maxVar;
+		buildOccurrences();
+	}
+
+	/**
+	 * Method: buildOccurrences
+	 *         Builds occStart and occ with two counting passes over the clauses.
+	 */
+	private void buildOccurrences() {
+		this.occStart = this.storage.allocateLongs(this.maxVar + 2);
+		for (int c = 0; c < this.numOfClauses; c++) {
+			increment(this.occStart, (this.lit1.get(c) >>> 1) + 1);
+			increment(this.occStart, (this.lit2.get(c) >>> 1) + 1);
+		}
+		this.numOfActiveVars = 0;
+		for (int v = 0; v <= this.maxVar; v++) {
+			if (this.occStart.get(v + 1) > 0) this.numOfActiveVars++;
+			this.occStart.set(v + 1, this.occStart.get(v + 1) + this.occStart.get(v));
+		}
+
+		/* Fill in the clause indices, using occStart[v] as the write position of v, then shift occStart back. */
+		this.occ = this.storage.allocateInts(2L * this.numOfClauses);
+		for (int c = 0; c < this.numOfClauses; c++) {
+			this.occ.set(increment(this.occStart, this.lit1.get(c) >>> 1), c);
+			this.occ.set(increment(this.occStart, this.lit2.get(c) >>> 1), c);
+		}
+		for (int v = this.maxVar + 1; v > 0; v--) this.occStart.set(v, this.occStart.get(v - 1));
+		this.occStart.set(0, 0);
+	}
+
+	/**
+	 * Method: increment
+	 * @param counts
+	 * @param i
+	 * @return counts[i] before it was incremented
+	 */
+	private static long increment(TwoSAT_Storage.Longs counts, long i) {
+		long count = counts.get(i);
+		counts.set(i, count + 1);
+		return count;
+	}
+
+	/**
+	 * Method: newAssignment
+	 * @return an all-false assignment bitset big enough for this store
+	 */
+	long[] newAssignment() {
+		return new long[(this.maxVar >>> 6) + 1];
+	}
+
+	/**
+	 * Method: code
+	 * @param signedLiteral literal as written in the data file, e.g. -16808
+	 * @return the literal code
+	 */
+	static int code(int signedLiteral) {
+		return signedLiteral < 0 ? (-signedLiteral << 1) | 1 : signedLiteral << 1;
+	}
+
+	/**
+	 * Method: checkRange
+	 *         code() itself does not check its argument, since the solvers call it in their inner loops. Literals
+	 *         coming from outside go through this first, once, when the clauses are loaded.
+	 * @param signedLiteral
+	 * @return signedLiteral, unchanged
+	 * @throws IllegalArgumentException if the variable is beyond MAX_VARIABLE, so that its codes would overflow
+	 */
+	static int checkRange(int signedLiteral) {
+		if (signedLiteral < -MAX_VARIABLE || signedLiteral > MAX_VARIABLE) {
+			throw new IllegalArgumentException("Literal " + signedLiteral + " out of range: variables go up to " + MAX_VARIABLE);
+		}
+		return signedLiteral;
+	}
+
+	/**
+	 * Method: signedLiteral
+	 * @param code literal code
+	 * @return the literal as written in the data file
+	 */
+	static int signedLiteral(int code) {
+		return (code & 1) == 0 ? code >>> 1 : -(code >>> 1);
+	}
+
+	/**
+	 * Method: isTrue
+	 *         Branch-free: takes the variable's bit and XORs it with the literal's sign bit.
+	 * @param bits assignment bitset
+	 * @param code literal code
+	 * @return true if the literal is true under the given assignment
+	 */
+	static boolean isTrue(long[] bits, int code) {
+		return (((bits[code >>> 7] >>> (code >>> 1)) ^ code) & 1L) != 0;
+	}
+
+	/**
+	 * Method: isSatisfied
+	 * @param bits assignment bitset
+	 * @param c clause index
+	 * @return true if clause c is true under the given assignment
+	 */
+	boolean isSatisfied(long[] bits, int c) {
+		int a = this.lit1.get(c), b = this.lit2.get(c);
+		return ((((bits[a >>> 7] >>> (a >>> 1)) ^ a) | ((bits[b >>> 7] >>> (b >>> 1)) ^ b)) & 1L) != 0;
+	}
+
+	/**
+	 * Method: getValue
+	 * @param bits assignment bitset
+	 * @param v variable
+	 * @return the value of variable v
+	 */
+	static boolean getValue(long[] bits, int v) {
+		return ((bits[v >>> 6] >>> v) & 1L) != 0;
+	}
+
+	/**
+	 * Method: flip
+	 *         Flips the value of variable v.
+	 * @param bits assignment bitset
+	 * @param v variable
+	 */
+	static void flip(long[] bits, int v) {
+		bits[v >>> 6] ^= 1L << v;
+	}
+}
@@ -0,0 +1,211 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** Class: TwoSAT_Components.java
+ *
+ *  This class - splits a formula into independent subformulas and solves them in parallel with the random walk.
+ *
+ *  Two variables interact if they appear in the same clause. The connected components of this variable-interaction
+ *  graph (found with union-find over the clause list) share no variables, so each of them can be solved on its own:
+ *  the formula is satisfiable iff every component is, and the models of the components simply add up.
+ *
+ *  This matters for the random walk because its budget is 2 * n^2 flips per restart, and its random picks are spread
+ *  over all false clauses. With one global n, one hard component stalls all the easy ones. Here every component is
+ *  renumbered to variables 1 ... k and gets its own TwoSAT_PackedWalk, with a budget scaled to its own k.
+ *  As soon as one component comes back UNSATISFIABLE, the remaining walks are told to stop.
+ */
+public class TwoSAT_Components {
+
+	private static final int CLAUSES_PER_TASK = 1 << 16;	//small components are grouped into tasks of about this size
+
+	private TwoSAT_ClauseStore store;	//the whole formula
+	private int numOfComps;				//no. of components
+	private int[] compClauseStart;		//clauses of component k are compLiterals[2 * compClauseStart[k]] ... (signed, local labels)
+	private int[] compLiterals;
+	private int[] compVarStart;			//global label of local variable i (1-based) of component k is compVars[compVarStart[k] + i - 1]
+	private int[] compVars;
+	private long[] model;				//merged model, indexed by global variable
+
+	/**
+	 * 1-arg constructor. Finds the components.
+	 * @param store
+	 */
+	public TwoSAT_Components(TwoSAT_ClauseStore store) {
+		this.store = store;
+		decompose();
+	}
+
+	/**
+	 * Method: decompose
+	 *         Union-find over the clause list, then groups variables and clauses by component.
+	 */
+	private void decompose() {
+		int maxVar = this.store.maxVar;
+		int m = this.store.numOfClauses;
+
+		/* Union the two variables of every clause. */
+		int[] parent = new int[maxVar + 1];
+		for (int v = 0; v <= maxVar; v++) parent[v] = v;
+		for (int c = 0; c < m; c++) {
+			int a = find(parent, this.store.lit1.get(c) >>> 1), b = find(parent, this.store.lit2.get(c) >>> 1);
+			if (a != b) parent[Math.max(a, b)] = Math.min(a, b);	//the smaller label becomes the root
+		}
+
+		/* Number the components (in order of their smallest variable) and the variables within each component. */
+		int[] compOf = new int[maxVar + 1];
+		int[] localId = new int[maxVar + 1];
+		Arrays.fill(compOf, -1);
+		int[] varCount = new int[maxVar + 1];
+		this.numOfComps = 0;
+		for (int v = 1; v <= maxVar; v++) {
+			if (this.store.occStart.get(v) == this.store.occStart.get(v + 1)) continue;	//variable does not occur
+			int root = find(parent, v);
+			if (compOf[root] < 0) compOf[root] = this.numOfComps++;
+			compOf[v] = compOf[root];
+			localId[v] = ++varCount[compOf[v]];
+		}
+
+		this.compVarStart = new int[this.numOfComps + 1];
+		for (int k = 0; k < this.numOfComps; k++) this.compVarStart[k + 1] = this.compVarStart[k] + varCount[k];
+		this.compVars = new int[this.compVarStart[this.numOfComps]];
+		for (int v = 1; v <= maxVar; v++) {
+			if (compOf[v] >= 0) this.compVars[this.compVarStart[compOf[v]] + localId[v] - 1] = v;
+		}
+
+		/* Group the clauses by component (counting sort), translated to local labels. */
+		this.compClauseStart = new int[this.numOfComps + 1];
+		for (int c = 0; c < m; c++) this.compClauseStart[compOf[this.store.lit1.get(c) >>> 1] + 1]++;
+		for (int k = 0; k < this.numOfComps; k++) this.compClauseStart[k + 1] += this.compClauseStart[k];
+		int[] next = Arrays.copyOf(this.compClauseStart, this.numOfComps);
+		this.compLiterals = new int[2 * m];
+		for (int c = 0; c < m; c++) {
+			int a = this.store.lit1.get(c), b = this.store.lit2.get(c);
+			int i = 2 * next[compOf[a >>> 1]]++;
+			this.compLiterals[i] = TwoSAT_ClauseStore.signedLiteral((localId[a >>> 1] << 1) | (a & 1));
+			this.compLiterals[i + 1] = TwoSAT_ClauseStore.signedLiteral((localId[b >>> 1] << 1) | (b & 1));
+		}
+	}
+
+	/**
+	 * Method: find
+	 *         Union-find lookup with path halving.
+	 * @param parent
+	 * @param v
+	 * @return the root of v's set
+	 */
+	private static int find(int[] parent, int v) {
+		while (parent[v] != v) {
+			parent[v] = parent[parent[v]];
+			v = parent[v];
+		}
+		return v;
+	}
+
+	/**
+	 * Method: solve
+	 *         Solves every component with its own random walk, in parallel, and merges the models.
+	 * @param numOfThreads
+	 * @param seed random seed
+	 * @return true if every component is satisfiable; false as soon as one is (probably) unsatisfiable.
+	 */
+	public boolean solve(int numOfThreads, final long seed) {
+		final AtomicBoolean unsatisfiable = new AtomicBoolean(false);
+		final TwoSAT_PackedWalk[] walks = new TwoSAT_PackedWalk[this.numOfComps];
+
+		/* One task per big component; small components are grouped together. */
+		List<Callable<Void>> tasks = new ArrayList<>();
+		int k = 0;
+		while (k < this.numOfComps) {
+			final int kFrom = k;
+			int clauses = 0;
+			do {
+				clauses += this.compClauseStart[k + 1] - this.compClauseStart[k];
+				k++;
+			} while (k < this.numOfComps && clauses < CLAUSES_PER_TASK);
+			final int kTo = k;
+
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (int comp = kFrom; comp < kTo && !unsatisfiable.get(); comp++) {
+						int from = compClauseStart[comp], to = compClauseStart[comp + 1];
+						TwoSAT_ClauseStore sub = new TwoSAT_ClauseStore(Arrays.copyOfRange(compLiterals, 2 * from, 2 * to), to - from);
+						TwoSAT_PackedWalk walk = new TwoSAT_PackedWalk(sub, seed + comp);
+						walk.setStopFlag(unsatisfiable);
+						if (!walk.run()) {
+							unsatisfiable.set(true);	//short-circuits all other components
+							return null;
+						}
+						walks[comp] = walk;
+					}
+					return null;
+				}
+			});
+		}
+		//end while
+
+		ExecutorService executor = Executors.newFixedThreadPool(numOfThreads);
+		try {
+			for (Future<Void> f : executor.invokeAll(tasks)) f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		if (unsatisfiable.get()) return false;
+
+		/* Merge the per-component models into one global model. */
+		this.model = this.store.newAssignment();
+		for (int comp = 0; comp < this.numOfComps; comp++) {
+			for (int i = this.compVarStart[comp]; i < this.compVarStart[comp + 1]; i++) {
+				if (walks[comp].getValue(i - this.compVarStart[comp] + 1)) TwoSAT_ClauseStore.flip(this.model, this.compVars[i]);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Method: getValue
+	 * @param v global variable label
+	 * @return the value of variable v in the merged model (only valid after solve() returned true)
+	 */
+	public boolean getValue(int v) {
+		return TwoSAT_ClauseStore.getValue(this.model, v);
+	}
+
+	/**
+	 * Method: getModel
+	 * @return the merged model as an assignment bitset (only valid after solve() returned true)
+	 */
+	long[] getModel() {
+		return this.model;
+	}
+
+	/**
+	 * Method: getNumOfComps
+	 * @return the no. of independent components
+	 */
+	public int getNumOfComps() {
+		return this.numOfComps;
+	}
+
+	/**
+	 * Method: getLargestComp
+	 * @return the no. of clauses in the biggest component
+	 */
+	public int getLargestComp() {
+		int largest = 0;
+		for (int k = 0; k < this.numOfComps; k++) largest = Math.max(largest, this.compClauseStart[k + 1] - this.compClauseStart[k]);
+		return largest;
+	}
+}
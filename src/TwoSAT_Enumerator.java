@@ -0,0 +1,291 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/** Class: TwoSAT_Enumerator.java
+ *
+ *  This class - streams all satisfying assignments of a 2-SAT formula (or the first few), or just counts them.
+ *
+ *  Works on the SCC condensation of the implication graph (see TwoSAT_ImplicationGraph.java). All literals in one SCC
+ *  are equivalent, so it suffices to decide one value per pair of complementary SCCs {K, ~K}. Setting K to TRUE forces
+ *  every SCC reachable from K to TRUE (and their complements to FALSE).
+ *
+ *  The enumeration is a backtracking search over these pairs that only ever descends into a branch whose
+ *  propagation caused no conflict. For 2-SAT, such a branch always contains at least one model: the clauses that are
+ *  not yet satisfied are a subset of the original (satisfiable) ones and do not touch any assigned variable. So every
+ *  dead end is detected after one propagation, and the time between two models is polynomial
+ *  (at most O(no. of SCCs * size of the condensation)).
+ *
+ *  Models are handed to a ModelSink one at a time, in the same reused buffer. Memory use is linear in the size of the
+ *  formula and does not grow with the number of models produced.
+ *
+ *  Variables that do not occur in any clause are not enumerated; they are always FALSE in the models.
+ */
+public class TwoSAT_Enumerator {
+
+	/**
+	 * Interface: ModelSink
+	 *            Receives the models one at a time.
+	 */
+	public interface ModelSink {
+		/**
+		 * Method: accept
+		 * @param model assignment bitset, indexed by variable. The buffer is reused for the next model, so copy it
+		 *              if it needs to be kept.
+		 * @return true to continue the enumeration, false to stop it
+		 */
+		boolean accept(long[] model) throws IOException;
+	}
+
+	private TwoSAT_ImplicationGraph graph;
+	private int[] pairs;		//one SCC of every pair {K, ~K} that contains occurring variables, in decision order
+	private byte[] value;		//value of each SCC: 1 = TRUE, 0 = FALSE, -1 = not yet assigned
+	private int[] trail;		//SCCs assigned so far, in order, so that assignments can be undone
+	private int trailSize;
+	private int[] work;			//explicit stack for propagation
+	private int[] decisionPair;		//for each open decision: index into pairs[]...
+	private int[] decisionMark;		//...trail size before the decision...
+	private boolean[] decisionAlt;	//...and whether the other value still has to be tried
+	private long[] model;		//reused model buffer handed to the sink
+
+	/**
+	 * 1-arg constructor
+	 * @param graph
+	 */
+	public TwoSAT_Enumerator(TwoSAT_ImplicationGraph graph) {
+		this.graph = graph;
+		int c = graph.numOfComps;
+		this.value = new byte[c];
+		this.trail = new int[c];
+		this.work = new int[Math.max(1, c + graph.dagTo.length)];
+		this.model = new long[(graph.maxVar >>> 6) + 1];
+
+		/* Decide the pairs in topological order of the condensation (biggest SCC no. first). Each pair is
+		 * represented by its SCC that comes first, and we try FALSE for it first. */
+		int numOfPairs = 0;
+		int[] candidates = new int[c];
+		boolean[] taken = new boolean[c];
+		for (int v = 1; v <= graph.maxVar; v++) {
+			if (!graph.occurs(v)) continue;
+			int k = Math.max(graph.comp[2 * v], graph.comp[2 * v + 1]);
+			if (!taken[k]) {
+				taken[k] = true;
+				taken[graph.compNeg[k]] = true;
+				candidates[numOfPairs++] = k;
+			}
+		}
+		this.pairs = Arrays.copyOf(candidates, numOfPairs);
+		Arrays.sort(this.pairs);
+		for (int i = 0, j = numOfPairs - 1; i < j; i++, j--) {	//descending order
+			int tmp = this.pairs[i];
+			this.pairs[i] = this.pairs[j];
+			this.pairs[j] = tmp;
+		}
+		this.decisionPair = new int[numOfPairs + 1];
+		this.decisionMark = new int[numOfPairs + 1];
+		this.decisionAlt = new boolean[numOfPairs + 1];
+	}
+
+	/**
+	 * Method: enumerate
+	 *         Streams models to the sink until there are no more, the limit is reached, or the sink says stop.
+	 * @param sink
+	 * @param limit maximum no. of models to produce (Long.MAX_VALUE for all)
+	 * @return the no. of models produced
+	 * @throws IOException if the sink throws it
+	 */
+	public long enumerate(ModelSink sink, long limit) throws IOException {
+		if (!this.graph.isSatisfiable() || limit <= 0) return 0;
+		Arrays.fill(this.value, (byte) -1);
+		this.trailSize = 0;
+		long count = 0;
+		int depth = 0;	//no. of open decisions
+		int next = 0;	//index of the next pair to decide
+
+		while (true) {
+			/* Skip pairs that propagation already decided. */
+			while (next < this.pairs.length && this.value[this.pairs[next]] >= 0) next++;
+
+			if (next == this.pairs.length) {
+				/* All pairs decided: emit the model. */
+				count++;
+				if (!sink.accept(buildModel()) || count >= limit) return count;
+
+				/* Backtrack to the last decision whose other value was not tried yet. */
+				while (true) {
+					if (depth == 0) return count;
+					depth--;
+					undo(this.decisionMark[depth]);
+					if (!this.decisionAlt[depth]) continue;
+					int k = this.pairs[this.decisionPair[depth]];
+					this.decisionAlt[depth] = false;
+					if (assign(k)) {	//second value: K = TRUE
+						next = this.decisionPair[depth];
+						depth++;
+						break;
+					}
+					undo(this.decisionMark[depth]);
+				}
+				//end while (backtrack)
+				continue;
+			}
+
+			/* New decision for pair k: first try K = FALSE (i.e. ~K = TRUE), then K = TRUE. */
+			int k = this.pairs[next];
+			this.decisionPair[depth] = next;
+			this.decisionMark[depth] = this.trailSize;
+			if (assign(this.graph.compNeg[k])) {
+				this.decisionAlt[depth] = true;
+			}
+			else {
+				/* K = FALSE leads to a conflict, so K must be TRUE. Since the formula restricted to the open pairs
+				 * is still satisfiable, this cannot conflict. */
+				undo(this.decisionMark[depth]);
+				this.decisionAlt[depth] = false;
+				assign(k);
+			}
+			depth++;
+			next++;
+		}
+		//end while
+	}
+
+	/**
+	 * Method: assign
+	 *         Sets SCC k to TRUE and propagates along the condensation DAG.
+	 * @param k
+	 * @return false if this contradicts an earlier assignment (the partial assignment is then left as is; undo it)
+	 */
+	private boolean assign(int k) {
+		int sp = 0;
+		this.work[sp++] = k;
+		while (sp > 0) {
+			int x = this.work[--sp];
+			if (this.value[x] == 1) continue;
+			if (this.value[x] == 0) return false;
+			this.value[x] = 1;
+			this.value[this.graph.compNeg[x]] = 0;
+			this.trail[this.trailSize++] = x;
+			for (int e = this.graph.dagStart[x]; e < this.graph.dagStart[x + 1]; e++) {
+				if (this.value[this.graph.dagTo[e]] != 1) this.work[sp++] = this.graph.dagTo[e];
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Method: undo
+	 *         Undoes all assignments made after the trail had the given size.
+	 * @param mark
+	 */
+	private void undo(int mark) {
+		while (this.trailSize > mark) {
+			int x = this.trail[--this.trailSize];
+			this.value[x] = -1;
+			this.value[this.graph.compNeg[x]] = -1;
+		}
+	}
+
+	/**
+	 * Method: buildModel
+	 * @return the current (complete) assignment as a bitset, in the reused buffer
+	 */
+	private long[] buildModel() {
+		Arrays.fill(this.model, 0L);
+		for (int v = 1; v <= this.graph.maxVar; v++) {
+			if (this.graph.occurs(v) && this.value[this.graph.comp[2 * v]] == 1) this.model[v >>> 6] |= 1L << v;
+		}
+		return this.model;
+	}
+
+	/**
+	 * Method: count
+	 * @param cap stop counting once this many models have been found
+	 * @return the no. of models, or cap if there are at least that many
+	 */
+	public long count(long cap) {
+		try {
+			return enumerate(new ModelSink() {
+				@Override
+				public boolean accept(long[] model) {
+					return true;
+				}
+			}, cap);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);	//cannot happen: this sink does no I/O
+		}
+	}
+
+	/**
+	 * Class: BinaryFileSink
+	 *        Writes every model to a binary file as a fixed-size record of (maxVar + 8) / 8 bytes:
+	 *        bit v of the record (least significant bit first) is the value of variable v.
+	 */
+	public static class BinaryFileSink implements ModelSink {
+		private DataOutputStream out;
+		private byte[] record;
+
+		/**
+		 * 2-arg constructor
+		 * @param fileName
+		 * @param maxVar
+		 * @throws IOException
+		 */
+		public BinaryFileSink(String fileName, int maxVar) throws IOException {
+			this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16));
+			this.record = new byte[(maxVar + 8) / 8];
+		}
+
+		@Override
+		public boolean accept(long[] model) throws IOException {
+			for (int i = 0; i < this.record.length; i++) this.record[i] = (byte) (model[i >>> 3] >>> ((i & 7) << 3));
+			this.out.write(this.record);
+			return true;
+		}
+
+		/**
+		 * Method: close
+		 * @throws IOException
+		 */
+		public void close() throws IOException {
+			this.out.close();
+		}
+	}
+	//end public static class BinaryFileSink
+
+	/**
+	 * Method: main
+	 *         Usage: java TwoSAT_Enumerator dataFile [limit] [outputFile]
+	 *         Without an output file, prints the models (as the list of TRUE variables) to the console.
+	 * @param args
+	 */
+	public static void main(String[] args) throws IOException {
+		final TwoSAT_ImplicationGraph graph = new TwoSAT_ImplicationGraph(TwoSAT_ClauseList.load(args[0]));
+		long limit = args.length > 1 ? Long.parseLong(args[1]) : Long.MAX_VALUE;
+		TwoSAT_Enumerator enumerator = new TwoSAT_Enumerator(graph);
+
+		long startTime = System.currentTimeMillis();
+		long count;
+		if (args.length > 2) {
+			BinaryFileSink sink = new BinaryFileSink(args[2], graph.maxVar);
+			count = enumerator.enumerate(sink, limit);
+			sink.close();
+		}
+		else {
+			count = enumerator.enumerate(new ModelSink() {
+				@Override
+				public boolean accept(long[] model) {
+					StringBuilder sb = new StringBuilder("TRUE:");
+					for (int v = 1; v <= graph.maxVar; v++) {
+						if (TwoSAT_ClauseStore.getValue(model, v)) sb.append(' ').append(v);
+					}
+					System.out.println(sb);
+					return true;
+				}
+			}, limit);
+		}
+		System.out.printf("%s models in %s ms\n", count, System.currentTimeMillis() - startTime);
+	}
+}
@@ -0,0 +1,239 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+/** Class: TwoSAT_GzipPipeline.java
+ *
+ *  This class - reads a gzip-compressed data file (e.g. 2sat1_solvable.txt.gz) straight into a TwoSAT_ClauseList,
+ *  without decompressing it to a temp file first.
+ *
+ *  The work is arranged as a two-stage pipeline so that decompression and parsing overlap:
+ *
+ *  1) The inflater stage (the calling thread) inflates the file into a small pool of reusable byte buffers.
+ *     Each buffer is cut at its last newline, so every chunk handed downstream holds whole lines only.
+ *     The leftover partial line is carried over to the start of the next buffer.
+ *  2) Parser threads take the chunks, turn them into primitive clause blocks, and hand the buffers back to the pool.
+ *
+ *  Once the whole file has been inflated, the blocks are concatenated in file order.
+ */
+public class TwoSAT_GzipPipeline {
+
+	private static final int BUFFER_SIZE = 1 << 20;	//size of each reusable inflate buffer (1 MB)
+
+	private String fileName;			//name of the gzip-compressed data file
+	private int numOfParsers;			//no. of parser threads
+	private BlockingQueue<byte[]> freeBuffers;	//pool of buffers ready to be inflated into
+	private BlockingQueue<Chunk> fullChunks;	//chunks waiting to be parsed
+	private long inflatedBytes;			//total no. of bytes after decompression
+	private volatile Throwable parseError;	//first error hit by any parser thread (including Errors such as OutOfMemoryError), if any
+
+	/**
+	 * 1-arg constructor. Uses one parser thread per available core (minus the one used for inflating).
+	 * @param fileName
+	 */
+	public TwoSAT_GzipPipeline(String fileName) {
+		this(fileName, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+	}
+
+	/**
+	 * 2-arg constructor
+	 * @param fileName
+	 * @param numOfParsers no. of parser threads
+	 */
+	public TwoSAT_GzipPipeline(String fileName, int numOfParsers) {
+		this.fileName = fileName;
+		this.numOfParsers = numOfParsers;
+		this.freeBuffers = new ArrayBlockingQueue<byte[]>(2 * numOfParsers + 2);
+		this.fullChunks = new ArrayBlockingQueue<Chunk>(2 * numOfParsers + 2);
+		for (int i = 0; i < 2 * numOfParsers + 2; i++) this.freeBuffers.add(new byte[BUFFER_SIZE]);
+	}
+
+	/**
+	 * Method: load
+	 *         Runs the pipeline and reports its throughput.
+	 * @return all clauses in the file
+	 * @throws IOException
+	 */
+	public TwoSAT_ClauseList load() throws IOException {
+		long startTime = System.currentTimeMillis();
+		ExecutorService parsers = Executors.newFixedThreadPool(this.numOfParsers);
+		ArrayList<Future<?>> parserResults = new ArrayList<>();
+		ArrayList<TwoSAT_ClauseList.IntBlock> blocks = new ArrayList<>();	//one block per chunk, in file order
+
+		int[] header;
+		try {
+			for (int i = 0; i < this.numOfParsers; i++) {
+				parserResults.add(parsers.submit(new Runnable() {
+					@Override
+					public void run() {
+						parse();
+					}
+				}));
+			}
+			header = inflate(blocks);
+			for (int i = 0; i < this.numOfParsers; i++) this.fullChunks.put(Chunk.END);
+
+			for (Future<?> f : parserResults) f.get();	//wait for the parsers
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("Interrupted while loading " + this.fileName);
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to parse " + this.fileName, e.getCause());
+		} finally {
+			parsers.shutdownNow();
+		}
+		//end try/catch
+		if (this.parseError instanceof Error) throw (Error) this.parseError;	//e.g. OutOfMemoryError: rethrown as is, on this thread
+		if (this.parseError != null) throw new IOException("Failed to parse " + this.fileName, this.parseError);
+
+		/* Concatenate the blocks in file order. This copies one block at a time, not one clause at a time. */
+		int numOfClauses = header[1];
+		int[] literals = new int[2 * numOfClauses];
+		int size = 0;
+		for (TwoSAT_ClauseList.IntBlock block : blocks) {
+			int len = Math.min(block.size, literals.length - size);
+			System.arraycopy(block.ints, 0, literals, size, len);
+			size += len;
+		}
+		if (size < literals.length) {
+			throw new IOException(String.format("%s: expected %s clauses but found only %s", this.fileName, numOfClauses, size / 2));
+		}
+
+		long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+		System.out.printf("Inflated and parsed %s (%.1f MB) in %s ms: %.1f MB/s, %.0f clauses/s\n",
+				this.fileName, this.inflatedBytes / 1e6, elapsed,
+				this.inflatedBytes / 1e3 / elapsed, numOfClauses * 1000.0 / elapsed);
+		return new TwoSAT_ClauseList(header[0], numOfClauses, literals);
+	}
+
+	/**
+	 * Method: inflate
+	 *         The inflater stage. Fills buffers from the pool and hands them to the parsers as whole-line chunks.
+	 * @param blocks list to register one (still empty) block per chunk in, in file order
+	 * @return the parsed header line: {numOfVars, numOfClauses}
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private int[] inflate(ArrayList<TwoSAT_ClauseList.IntBlock> blocks) throws IOException, InterruptedException {
+		InputStream in = new GZIPInputStream(new FileInputStream(new File(this.fileName)), 1 << 16);
+		byte[] carry = new byte[BUFFER_SIZE];	//partial line left over from the previous buffer
+		int carryLen = 0;
+		int[] header = null;
+		this.inflatedBytes = 0;
+
+		try {
+			boolean eof = false;
+			while (!eof && this.parseError == null) {	//after a parse error, the rest of the file is not worth inflating
+				byte[] buf = this.freeBuffers.take();
+				System.arraycopy(carry, 0, buf, 0, carryLen);
+				int len = carryLen;
+
+				/* Fill the buffer as far as possible. */
+				while (len < buf.length) {
+					int read = in.read(buf, len, buf.length - len);
+					if (read < 0) {
+						eof = true;
+						break;
+					}
+					len += read;
+					this.inflatedBytes += read;
+				}
+
+				/* Cut the buffer at its last newline. Everything after it goes to the next buffer. */
+				int cut = len;
+				if (!eof) {
+					while (cut > 0 && buf[cut - 1] != '\n') cut--;
+					if (cut == 0) throw new IOException(this.fileName + ": line longer than " + BUFFER_SIZE + " bytes");
+				}
+				carryLen = len - cut;
+				System.arraycopy(buf, cut, carry, 0, carryLen);
+
+				/* The very first line is the header. Parse it here rather than in a parser thread. */
+				int start = 0;
+				if (header == null) {
+					while (start < cut && buf[start] != '\n') start++;
+					header = TwoSAT_ClauseList.parseHeader(buf, 0, start);
+					start = Math.min(start + 1, cut);
+				}
+
+				TwoSAT_ClauseList.IntBlock block = new TwoSAT_ClauseList.IntBlock(cut / 6);
+				blocks.add(block);
+				this.fullChunks.put(new Chunk(buf, start, cut, block));
+			}
+			//end while
+		} finally {
+			in.close();
+		}
+		if (header == null) throw new IOException(this.fileName + ": empty file");
+		return header;
+	}
+
+	/**
+	 * Method: parse
+	 *         The parser stage. Run by each parser thread until the end-of-input marker arrives.
+	 *         After a parse error, chunks are still drained (but no longer parsed) so the inflater never stalls.
+	 */
+	private void parse() {
+		try {
+			while (true) {
+				Chunk chunk = this.fullChunks.take();
+				if (chunk == Chunk.END) return;
+				try {
+					if (this.parseError == null) TwoSAT_ClauseList.parseLines(chunk.buf, chunk.from, chunk.to, chunk.block);
+				} catch (Throwable e) {
+					if (this.parseError == null) this.parseError = e;	//the buffer must still go back, or the inflater would wait forever
+				}
+				this.freeBuffers.put(chunk.buf);	//hand the buffer back to the inflater
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Class: Chunk
+	 *        A range of whole lines inside one inflate buffer, plus the block its clauses should be parsed into.
+	 */
+	private static class Chunk {
+		static final Chunk END = new Chunk(null, 0, 0, null);	//end-of-input marker
+
+		byte[] buf;
+		int from, to;
+		TwoSAT_ClauseList.IntBlock block;
+
+		/**
+		 * 4-arg constructor
+		 * @param buf
+		 * @param from
+		 * @param to
+		 * @param block
+		 */
+		Chunk(byte[] buf, int from, int to, TwoSAT_ClauseList.IntBlock block) {
+			this.buf = buf;
+			this.from = from;
+			this.to = to;
+			this.block = block;
+		}
+	}
+	//end private static class Chunk
+
+	/**
+	 * Method: main
+	 * @param args one or more *.gz data files
+	 */
+	public static void main(String[] args) throws IOException {
+		for (String s : args) {
+			TwoSAT_ClauseList clauses = new TwoSAT_GzipPipeline(s).load();
+			System.out.printf("%s: %s variables, %s clauses\n", s, clauses.numOfVars, clauses.numOfClauses);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+import java.util.Arrays;
+
+/** Class: TwoSAT_ImplicationGraph.java
+ *
+ *  This class - the implication graph of a 2-SAT formula and its SCC condensation, in primitive arrays.
+ *
+ *  Same reduction as TwoSAT_SCC: for every clause (u OR v), there are edges ~u -> v and ~v -> u. Nodes are literal
+ *  codes (2 * variable + (negated ? 1 : 0)), so the complement of node x is simply x ^ 1. The graph and its SCCs are
+ *  computed by TwoSAT_Batch.Scratch (iterative Tarjan), so there is no recursion depth limit.
+ *
+ *  Tarjan completes every SCC after all SCCs reachable from it, so SCC numbers are a reverse topological order:
+ *  for every edge X -> Y of the condensation DAG (between two different SCCs), X > Y.
+ */
+public class TwoSAT_ImplicationGraph {
+
+	int maxVar;			//the biggest variable label
+	int numOfNodes;		//2 * maxVar + 2 (nodes 0 and 1, i.e. variable 0, are unused)
+	int[] edgeStart;	//outgoing edges of node x are edgeTo[edgeStart[x]] ... edgeTo[edgeStart[x + 1] - 1]
+	int[] edgeTo;
+	int numOfComps;		//no. of SCCs
+	int[] comp;			//SCC no. of each node
+	int[] dagStart;		//edges of the condensation DAG: SCC X -> dagTo[dagStart[X]] ... dagTo[dagStart[X + 1] - 1]
+	int[] dagTo;		//(no self-loops, no duplicate edges)
+	int[] compNeg;		//the SCC holding the complements of the nodes of SCC k
+
+	/**
+	 * 2-arg constructor
+	 * @param signedLiterals two signed literals per clause (same format as TwoSAT_ClauseList.literals)
+	 * @param numOfClauses
+	 */
+	public TwoSAT_ImplicationGraph(int[] signedLiterals, int numOfClauses) {
+		TwoSAT_Batch.Scratch scratch = new TwoSAT_Batch.Scratch();
+		scratch.solve(signedLiterals, 0, 2 * numOfClauses, null, 0);
+		this.numOfNodes = scratch.numOfNodes;
+		this.maxVar = this.numOfNodes / 2 - 1;
+		this.edgeStart = new int[this.numOfNodes + 1];
+		for (int x = 0; x <= this.numOfNodes; x++) this.edgeStart[x] = (int) scratch.edgeStart.get(x);
+		this.edgeTo = TwoSAT_Storage.array(scratch.edgeTo);
+		this.numOfComps = scratch.numOfComps;
+		this.comp = TwoSAT_Storage.array(scratch.comp);
+		this.comp[0] = this.comp[1] = -1;	//variable 0 does not exist
+		buildCondensation();
+	}
+
+	/**
+	 * 1-arg constructor
+	 * @param clauses
+	 */
+	public TwoSAT_ImplicationGraph(TwoSAT_ClauseList clauses) {
+		this(clauses.literals, clauses.numOfClauses);
+	}
+
+	/**
+	 * Method: buildCondensation
+	 *         Builds the condensation DAG: one node per SCC, one edge per pair of SCCs connected by an edge.
+	 */
+	private void buildCondensation() {
+		/* Group the nodes by SCC (counting sort). */
+		int[] memberStart = new int[this.numOfComps + 1];
+		for (int x = 2; x < this.numOfNodes; x++) memberStart[this.comp[x] + 1]++;
+		for (int k = 0; k < this.numOfComps; k++) memberStart[k + 1] += memberStart[k];
+		int[] members = new int[this.numOfNodes];
+		int[] next = new int[this.numOfComps];
+		System.arraycopy(memberStart, 0, next, 0, this.numOfComps);
+		for (int x = 2; x < this.numOfNodes; x++) members[next[this.comp[x]]++] = x;
+
+		/* The complements of an SCC's nodes always form one SCC too (the graph is skew-symmetric). */
+		this.compNeg = new int[this.numOfComps];
+		for (int k = 0; k < this.numOfComps; k++) this.compNeg[k] = this.comp[members[memberStart[k]] ^ 1];
+
+		/* For each SCC, collect its distinct outgoing SCC edges. lastSeen[] filters duplicates. */
+		int[] lastSeen = new int[this.numOfComps];
+		Arrays.fill(lastSeen, -1);
+		this.dagStart = new int[this.numOfComps + 1];
+		int[] dag = new int[Math.max(1, this.edgeStart[this.numOfNodes])];
+		int size = 0;
+		for (int k = 0; k < this.numOfComps; k++) {
+			this.dagStart[k] = size;
+			for (int i = memberStart[k]; i < memberStart[k + 1]; i++) {
+				int x = members[i];
+				for (int e = this.edgeStart[x]; e < this.edgeStart[x + 1]; e++) {
+					int target = this.comp[this.edgeTo[e]];
+					if (target == k || lastSeen[target] == k) continue;
+					lastSeen[target] = k;
+					dag[size++] = target;
+				}
+			}
+		}
+		this.dagStart[this.numOfComps] = size;
+		this.dagTo = Arrays.copyOf(dag, size);
+	}
+
+	/**
+	 * Method: isSatisfiable
+	 * @return true unless some variable and its complement are in the same SCC
+	 */
+	public boolean isSatisfiable() {
+		for (int v = 1; v <= this.maxVar; v++) {
+			if (this.comp[2 * v] == this.comp[2 * v + 1]) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Method: getModel
+	 *         SCC numbers are a reverse topological order, so a variable is TRUE if its positive literal's SCC comes
+	 *         after its negative literal's SCC in topological order.
+	 * @return a model as an assignment bitset, indexed by variable (only valid if the formula is satisfiable)
+	 */
+	public long[] getModel() {
+		long[] model = new long[(this.maxVar >>> 6) + 1];
+		for (int v = 1; v <= this.maxVar; v++) {
+			if (this.comp[2 * v] < this.comp[2 * v + 1]) model[v >>> 6] |= 1L << v;
+		}
+		return model;
+	}
+
+	/**
+	 * Method: occurs
+	 * @param v variable
+	 * @return true if variable v occurs in at least one clause
+	 */
+	public boolean occurs(int v) {
+		return this.edgeStart[2 * v + 2] > this.edgeStart[2 * v];	//every occurrence adds an edge leaving ~x or x
+	}
+
+	/**
+	 * Method: getNumOfEdges
+	 * @return the no. of edges of the implication graph
+	 */
+	public int getNumOfEdges() {
+		return this.edgeStart[this.numOfNodes];
+	}
+}
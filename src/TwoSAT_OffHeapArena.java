@@ -0,0 +1,287 @@
+import java.io.Closeable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Class: TwoSAT_OffHeapArena.java
+ *
+ *  This class - the off-heap TwoSAT_Storage: allocates big int/long arrays outside of the Java heap, with a lifecycle
+ *  tied to whoever owns the arena.
+ *
+ *  The memory comes from direct ByteBuffers. To get past the 2^31 element limit of both Java arrays and ByteBuffers,
+ *  each array is split into segments of SEGMENT_SIZE elements and indexed with a long. The GC only ever sees a
+ *  handful of buffer objects per array, no matter how many elements they hold.
+ *
+ *  The arena owns every array it allocated. close() releases all of them at once: the native memory is freed right
+ *  away (see free()), and any later access to the arrays throws an exception instead of reading freed memory.
+ *  Direct memory is capped by -XX:MaxDirectMemorySize, which defaults to the heap size.
+ */
+public class TwoSAT_OffHeapArena extends TwoSAT_Storage implements Closeable {
+
+	static final int SEGMENT_SHIFT = 27;					//2^27 elements per segment (512 MB of ints, 1 GB of longs)
+	static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+	static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+	private static final Object UNSAFE;				//sun.misc.Unsafe, if it has invokeCleaner() (Java 9+)...
+	private static final Method INVOKE_CLEANER;		//...and that method
+
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			Class<?> c = Class.forName("sun.misc.Unsafe");
+			Field f = c.getDeclaredField("theUnsafe");
+			f.setAccessible(true);
+			unsafe = f.get(null);
+			invokeCleaner = c.getMethod("invokeCleaner", ByteBuffer.class);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			//Java 8: free() falls back to the buffer's own cleaner
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+	private List<SegmentedInts> intArrays = new ArrayList<>();		//everything allocated so far, to be released by close()
+	private List<SegmentedLongs> longArrays = new ArrayList<>();
+	private long allocatedBytes;
+
+	/**
+	 * Method: allocateInts
+	 * @param length no. of ints. May be more than Integer.MAX_VALUE.
+	 * @return a new zero-filled off-heap int array
+	 */
+	@Override
+	public Ints allocateInts(long length) {
+		checkOpen();
+		int numOfSegments = (int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+		ByteBuffer[] memory = new ByteBuffer[numOfSegments];
+		IntBuffer[] segments = new IntBuffer[numOfSegments];
+		for (int s = 0; s < numOfSegments; s++) {
+			int size = (int) Math.min(SEGMENT_SIZE, length - ((long) s << SEGMENT_SHIFT));
+			memory[s] = ByteBuffer.allocateDirect(4 * size).order(ByteOrder.nativeOrder());
+			segments[s] = memory[s].asIntBuffer();
+		}
+		SegmentedInts ints = new SegmentedInts(memory, segments, length);
+		this.intArrays.add(ints);
+		this.allocatedBytes += 4 * length;
+		return ints;
+	}
+
+	/**
+	 * Method: allocateLongs
+	 * @param length no. of longs. May be more than Integer.MAX_VALUE.
+	 * @return a new zero-filled off-heap long array
+	 */
+	@Override
+	public Longs allocateLongs(long length) {
+		checkOpen();
+		int numOfSegments = (int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+		ByteBuffer[] memory = new ByteBuffer[numOfSegments];
+		LongBuffer[] segments = new LongBuffer[numOfSegments];
+		for (int s = 0; s < numOfSegments; s++) {
+			int size = (int) Math.min(SEGMENT_SIZE, length - ((long) s << SEGMENT_SHIFT));
+			memory[s] = ByteBuffer.allocateDirect(8 * size).order(ByteOrder.nativeOrder());
+			segments[s] = memory[s].asLongBuffer();
+		}
+		SegmentedLongs longs = new SegmentedLongs(memory, segments, length);
+		this.longArrays.add(longs);
+		this.allocatedBytes += 8 * length;
+		return longs;
+	}
+
+	/**
+	 * Method: checkOpen
+	 */
+	private void checkOpen() {
+		if (this.intArrays == null) throw new IllegalStateException("Arena is closed");
+	}
+
+	/**
+	 * Method: getAllocatedBytes
+	 * @return total size of all arrays allocated so far, in bytes
+	 */
+	public long getAllocatedBytes() {
+		return this.allocatedBytes;
+	}
+
+	/**
+	 * Method: free
+	 *         Gives the native memory of a direct buffer back right away, instead of whenever the GC gets to the
+	 *         buffer. Uses Unsafe.invokeCleaner() on Java 9+ and the buffer's cleaner on Java 8. The buffer (and every
+	 *         view of it) must never be accessed again.
+	 * @param buf a direct buffer from ByteBuffer.allocateDirect() (not a slice or view)
+	 * @return false if neither way is available, so the memory is only given back by the GC
+	 */
+	static boolean free(ByteBuffer buf) {
+		try {
+			if (INVOKE_CLEANER != null) {
+				INVOKE_CLEANER.invoke(UNSAFE, buf);
+				return true;
+			}
+			Method cleanerMethod = buf.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buf);
+			if (cleaner == null) return false;
+			cleaner.getClass().getMethod("clean").invoke(cleaner);
+			return true;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Method: close
+	 *         Releases every array allocated by this arena and frees its memory. Closing twice does nothing.
+	 */
+	@Override
+	public void close() {
+		if (this.intArrays == null) return;
+		for (SegmentedInts ints : this.intArrays) ints.release();
+		for (SegmentedLongs longs : this.longArrays) longs.release();
+		this.intArrays = null;
+		this.longArrays = null;
+		this.allocatedBytes = 0;
+	}
+
+	/**
+	 * Class: SegmentedInts
+	 *        An off-heap int array with long indices.
+	 */
+	private static class SegmentedInts extends Ints {
+		private ByteBuffer[] memory;	//the direct buffers...
+		private IntBuffer[] segments;		//...and their typed views
+		private long length;
+
+		/**
+		 * 3-arg constructor
+		 * @param memory
+		 * @param segments
+		 * @param length
+		 */
+		private SegmentedInts(ByteBuffer[] memory, IntBuffer[] segments, long length) {
+			this.memory = memory;
+			this.segments = segments;
+			this.length = length;
+		}
+
+		/**
+		 * Method: get
+		 * @param i
+		 * @return element i
+		 */
+		@Override
+		public int get(long i) {
+			return this.segments[(int) (i >>> SEGMENT_SHIFT)].get((int) (i & SEGMENT_MASK));
+		}
+
+		/**
+		 * Method: set
+		 * @param i
+		 * @param value
+		 */
+		@Override
+		public void set(long i, int value) {
+			this.segments[(int) (i >>> SEGMENT_SHIFT)].put((int) (i & SEGMENT_MASK), value);
+		}
+
+		/**
+		 * Method: fill
+		 * @param value
+		 */
+		@Override
+		public void fill(int value) {
+			for (IntBuffer segment : this.segments) {
+				for (int j = 0, size = segment.capacity(); j < size; j++) segment.put(j, value);
+			}
+		}
+
+		/**
+		 * Method: length
+		 * @return no. of elements
+		 */
+		@Override
+		public long length() {
+			return this.length;
+		}
+
+		/**
+		 * Method: release
+		 *         Drops the segments, so that every later access fails, then frees their memory.
+		 */
+		private void release() {
+			this.segments = new IntBuffer[0];
+			this.length = 0;
+			for (ByteBuffer buf : this.memory) free(buf);
+			this.memory = null;
+		}
+	}
+	//end private static class SegmentedInts
+
+	/**
+	 * Class: SegmentedLongs
+	 *        An off-heap long array with long indices.
+	 */
+	private static class SegmentedLongs extends Longs {
+		private ByteBuffer[] memory;	//the direct buffers...
+		private LongBuffer[] segments;		//...and their typed views
+		private long length;
+
+		/**
+		 * 3-arg constructor
+		 * @param memory
+		 * @param segments
+		 * @param length
+		 */
+		private SegmentedLongs(ByteBuffer[] memory, LongBuffer[] segments, long length) {
+			this.memory = memory;
+			this.segments = segments;
+			this.length = length;
+		}
+
+		/**
+		 * Method: get
+		 * @param i
+		 * @return element i
+		 */
+		@Override
+		public long get(long i) {
+			return this.segments[(int) (i >>> SEGMENT_SHIFT)].get((int) (i & SEGMENT_MASK));
+		}
+
+		/**
+		 * Method: set
+		 * @param i
+		 * @param value
+		 */
+		@Override
+		public void set(long i, long value) {
+			this.segments[(int) (i >>> SEGMENT_SHIFT)].put((int) (i & SEGMENT_MASK), value);
+		}
+
+		/**
+		 * Method: length
+		 * @return no. of elements
+		 */
+		@Override
+		public long length() {
+			return this.length;
+		}
+
+		/**
+		 * Method: release
+		 *         Drops the segments, so that every later access fails, then frees their memory.
+		 */
+		private void release() {
+			this.segments = new LongBuffer[0];
+			this.length = 0;
+			for (ByteBuffer buf : this.memory) free(buf);
+			this.memory = null;
+		}
+	}
+	//end private static class SegmentedLongs
+}
@@ -0,0 +1,156 @@
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/** Class: TwoSAT_OffHeapFormula.java
+ *
+ *  This class - the clauses of a data file, streamed straight into off-heap memory (see TwoSAT_OffHeapArena.java).
+ *
+ *  Unlike TwoSAT_ClauseList, the whole file never sits on the heap as an int[]: it is read in BUFFER_SIZE pieces,
+ *  parsed with the shared byte-level parser, and every piece's literals are copied off-heap before the next piece is
+ *  read. Literals are stored as literal codes (2 * variable + (negated ? 1 : 0), see TwoSAT_ClauseStore.java) in two
+ *  parallel arrays, as in TwoSAT_ClauseStore. Gzip-compressed files are inflated on the fly.
+ *
+ *  The formula owns its arena, and the solvers run on it through getStorage(): TwoSAT_SCC.solveOffHeap() builds
+ *  the implication graph there, and TwoSAT_Papadimitriou.papadimitriouOffHeap() the occurrence lists of the walk.
+ *  close() releases the clauses and everything the solvers allocated for them.
+ */
+public class TwoSAT_OffHeapFormula implements Closeable {
+
+	private static final int BUFFER_SIZE = 4 << 20;	//4 MB read buffer
+
+	private TwoSAT_OffHeapArena arena = new TwoSAT_OffHeapArena();
+	int numOfVars;		//total number of variables, as given on the first line of the file
+	int maxVar;			//the biggest variable label that actually occurs (at least numOfVars)
+	long numOfClauses;	//no. of clauses read
+	TwoSAT_Storage.Ints lit1, lit2;	//literal codes of the two literals of each clause
+
+	/**
+	 * 1-arg constructor. Reads the file.
+	 * @param fileName
+	 * @throws IOException see TwoSAT_ClauseList.load()
+	 * @throws IllegalArgumentException if a variable is beyond TwoSAT_ClauseStore.MAX_VARIABLE
+	 */
+	public TwoSAT_OffHeapFormula(String fileName) throws IOException {
+		InputStream in = new FileInputStream(fileName);
+		if (TwoSAT_ClauseList.isGzip(fileName)) in = new GZIPInputStream(in, 1 << 16);
+		try {
+			read(in);
+		} catch (IOException | RuntimeException | Error e) {
+			this.arena.close();	//release whatever read() had already allocated off-heap; nobody else can
+			throw e;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Method: read
+	 *         Parses the header, then the clause lines piece by piece, carrying a partial last line over to the
+	 *         next piece.
+	 * @param in
+	 * @throws IOException
+	 */
+	private void read(InputStream in) throws IOException {
+		byte[] buf = new byte[BUFFER_SIZE];
+		TwoSAT_ClauseList.IntBlock block = new TwoSAT_ClauseList.IntBlock(BUFFER_SIZE / 4);
+		long declaredClauses = -1;	//from the header line
+		long numOfLits = 0;
+		int carryLen = 0;
+		boolean eof = false;
+
+		while (!eof) {
+			int len = carryLen;
+			while (len < buf.length) {
+				int read = in.read(buf, len, buf.length - len);
+				if (read < 0) {
+					eof = true;
+					break;
+				}
+				len += read;
+			}
+			int cut = len;
+			if (!eof) {
+				while (cut > 0 && buf[cut - 1] != '\n') cut--;
+				if (cut == 0) throw new IOException("Line longer than " + buf.length + " bytes");
+			}
+
+			int from = 0;
+			if (declaredClauses < 0) {
+				/* First piece: parse the header and allocate the clause array. */
+				int eol = 0;
+				while (eol < cut && buf[eol] != '\n') eol++;
+				int[] header = TwoSAT_ClauseList.parseHeader(buf, 0, eol);
+				this.numOfVars = header[0];
+				this.maxVar = header[0];
+				declaredClauses = header[1];
+				this.lit1 = this.arena.allocateInts(declaredClauses);
+				this.lit2 = this.arena.allocateInts(declaredClauses);
+				from = Math.min(cut, eol + 1);
+			}
+
+			/* Parse this piece and move its literals off-heap (at most the no. of clauses from the header). */
+			block.size = 0;
+			TwoSAT_ClauseList.parseLines(buf, from, cut, block);
+			for (int i = 0; i < block.size && numOfLits < 2 * declaredClauses; i++) {
+				int lit = TwoSAT_ClauseStore.checkRange(block.ints[i]);
+				this.maxVar = Math.max(this.maxVar, Math.abs(lit));
+				(numOfLits % 2 == 0 ? this.lit1 : this.lit2).set(numOfLits / 2, TwoSAT_ClauseStore.code(lit));
+				numOfLits++;
+			}
+
+			carryLen = len - cut;
+			System.arraycopy(buf, cut, buf, 0, carryLen);
+		}
+		//end while
+		if (declaredClauses < 0) throw new IOException("Missing header line");
+		if (numOfLits < 2 * declaredClauses) {
+			throw new IOException(String.format("Expected %s clauses but found only %s", declaredClauses, numOfLits / 2));
+		}
+		this.numOfClauses = declaredClauses;
+	}
+
+	/**
+	 * Method: getStorage
+	 * @return the formula's arena, for the solvers' own arrays
+	 */
+	TwoSAT_Storage getStorage() {
+		return this.arena;
+	}
+
+	/**
+	 * Method: getAllocatedBytes
+	 * @return off-heap memory used by the clauses and by the solvers that ran on them, in bytes
+	 */
+	public long getAllocatedBytes() {
+		return this.arena.getAllocatedBytes();
+	}
+
+	/**
+	 * Method: close
+	 *         Releases the clauses and the solvers' arrays.
+	 */
+	@Override
+	public void close() {
+		this.arena.close();
+	}
+
+	/**
+	 * Method: main
+	 *         Usage: java -XX:MaxDirectMemorySize=... TwoSAT_OffHeapFormula 2sat*.txt
+	 *         Runs both solvers off-heap. The walk only runs on satisfiable files, since it cannot prove unsatisfiability.
+	 * @param args
+	 */
+	public static void main(String[] args) throws IOException {
+		long startTime = System.currentTimeMillis();
+		for (String s : args) {
+			System.out.printf("==========================================================\nRunning %s...\n", s);
+			boolean satisfiable = TwoSAT_SCC.solveOffHeap(s);
+			System.out.printf("Satisfiable (SCC)? %s\n", satisfiable);
+			if (satisfiable) System.out.printf("Satisfiable (random walk)? %s\n", TwoSAT_Papadimitriou.papadimitriouOffHeap(s));
+		}
+		System.out.printf("Total elapsed time (in millisecs): %s\n", System.currentTimeMillis() - startTime);
+	}
+}
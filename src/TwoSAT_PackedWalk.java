@@ -0,0 +1,433 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** Class: TwoSAT_PackedWalk.java
+ *
+ *  This class - Papadimitriou's random walk over a TwoSAT_ClauseStore. Alternative backend to the object-based
+ *  walk in TwoSAT_Papadimitriou.papadimitriou(), with the same outer/inner loop schedule:
+ *
+ *      repeat log2(n) times:
+ *          choose a random initial assignment
+ *          repeat 2 * n^2 times:
+ *              if all clauses are true, stop and report SATISFIABLE
+ *              pick a random false clause and flip the value of one of its two variables (chosen at random)
+ *
+ *  The differences are in the data layout:
+ *  1) The assignment is a long[] bitset and clauses are parallel arrays of literal codes, so evaluating a clause is
+ *     two bit tests instead of two pointer chases.
+ *  2) The false clauses are kept in an int array plus a per-clause position index. After a flip, only the clauses
+ *     containing the flipped variable are re-evaluated, and the flip path allocates nothing. Full rescans (after each
+ *     restart, and to verify the final model) go through TwoSAT_BulkEvaluator.
+ *  3) One xorshift random number generator is used throughout, instead of a new Random object per pick.
+ *
+ *  Which of the two variables of the picked clause gets flipped is up to a TwoSAT_PickStrategy: Papadimitriou's coin
+ *  flip by default, or one of the focused WalkSAT/ProbSAT rules, for which the walk also maintains break counts.
+ *
+ *  Long runs can be checkpointed (see TwoSAT_WalkCheckpointer.java) and resumed with resume(). The whole state of the
+ *  walk is the assignment, the random number generator, the restart/flip counters and the list of false clauses (in
+ *  its current order, since picks index into it), so a resumed walk makes exactly the same flips as an uninterrupted one.
+ */
+public class TwoSAT_PackedWalk {
+
+	private static final int STOP_CHECK_INTERVAL = 1 << 10;	//no. of flips between two looks at the stop flag
+	private static final int CHECKPOINT_MAGIC = 0x32534154;		//"2SAT"
+	private static final int CHECKPOINT_VERSION = 1;
+
+	private TwoSAT_ClauseStore store;	//the clauses
+	private TwoSAT_BulkEvaluator evaluator;	//for full rescans
+	private long[] bits;				//current assignment
+	private TwoSAT_Storage.Ints falseClauses;	//indices of the clauses that are currently false
+	private TwoSAT_Storage.Ints falsePos;	//position of each clause in falseClauses, or -1 if the clause is true
+	private int numOfFalse;				//no. of clauses that are currently false
+	private long rng;					//xorshift random number generator state. Never 0.
+	private long numOfFlips;			//total no. of flips so far
+	private AtomicBoolean stop;			//if set (by another thread), run() gives up early. May be null.
+	private long restart = 1;			//outer loop counter i (1, 2, 4, ...)
+	private long step;					//inner loop counter j
+	private boolean resumed;			//true if run() should continue the restored restart instead of starting a new one
+	private TwoSAT_WalkCheckpointer checkpointer;	//may be null
+	private long[] best;				//best assignment seen so far (sampled every STOP_CHECK_INTERVAL flips)...
+	private int bestNumOfFalse = Integer.MAX_VALUE;	//...and its no. of false clauses
+	private long fingerprint;			//hash of the clauses, stored in checkpoints
+	private TwoSAT_PickStrategy strategy = new TwoSAT_PickStrategy.RandomPick();
+	private TwoSAT_Storage.Ints breakCount;	//per variable: no. of clauses only it makes true. Null unless the strategy uses them.
+
+	/**
+	 * 2-arg constructor
+	 * @param store the clauses to satisfy
+	 * @param seed random seed
+	 */
+	public TwoSAT_PackedWalk(TwoSAT_ClauseStore store, long seed) {
+		this.store = store;
+		this.evaluator = new TwoSAT_BulkEvaluator(store);
+		this.bits = store.newAssignment();
+		this.falseClauses = store.storage.allocateInts(store.numOfClauses);
+		this.falsePos = store.storage.allocateInts(store.numOfClauses);
+		this.rng = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+		this.fingerprint = fingerprint();
+	}
+
+	/**
+	 * Method: run
+	 *         The random walk algorithm for solving 2-SAT.
+	 * @return true if the clauses are satisfiable, false if they are probably unsatisfiable.
+	 */
+	public boolean run() {
+		if (this.store.numOfClauses == 0) return true;	//If there are no clauses, auto-return true
+		long n = this.store.numOfActiveVars;
+		long i = this.restart, j = this.step;
+		boolean fresh = !this.resumed;
+		if (this.resumed) computeBreakCounts();
+		this.resumed = false;
+
+		//outer loop
+		for (; i <= n; i *= 2) {
+			if (fresh) {
+				randomize();
+				evaluateAll();
+				j = 1;
+			}
+			fresh = true;
+
+			//inner loop
+			for (; j <= 2 * n * n; j++) {
+				if (this.numOfFalse == 0) return true;
+				if ((j & (STOP_CHECK_INTERVAL - 1)) == 0) {
+					if (this.stop != null && this.stop.get()) return false;
+					if (this.checkpointer != null) {
+						trackBest();
+						if (this.checkpointer.isDue()) {
+							this.restart = i;
+							this.step = j;
+							this.checkpointer.offer(this);
+						}
+					}
+				}
+
+				/* Pick a random false clause and let the strategy choose which of its two variables to flip. */
+				int c = this.falseClauses.get(nextInt(this.numOfFalse));
+				flip(this.strategy.pick(this, this.store.lit1.get(c), this.store.lit2.get(c)) >>> 1);
+			}
+			//end for j
+			if (this.numOfFalse == 0) return true;
+		}
+		//end for i
+		return false;
+	}
+
+	/**
+	 * Method: trackBest
+	 *         Remembers the current assignment if it has fewer false clauses than the best one so far.
+	 */
+	private void trackBest() {
+		if (this.numOfFalse >= this.bestNumOfFalse) return;
+		if (this.best == null) this.best = new long[this.bits.length];
+		System.arraycopy(this.bits, 0, this.best, 0, this.bits.length);
+		this.bestNumOfFalse = this.numOfFalse;
+	}
+
+	/**
+	 * Method: setStrategy
+	 * @param strategy how to choose the variable to flip in a false clause
+	 */
+	public void setStrategy(TwoSAT_PickStrategy strategy) {
+		this.strategy = strategy;
+		this.breakCount = strategy.usesBreakCounts() ? this.store.storage.allocateInts(this.store.maxVar + 1) : null;
+		computeBreakCounts();
+	}
+
+	/**
+	 * Method: getBreakCount
+	 * @param v variable
+	 * @return the no. of clauses that would become false if v were flipped (only maintained if the strategy uses it)
+	 */
+	int getBreakCount(int v) {
+		return this.breakCount.get(v);
+	}
+
+	/**
+	 * Method: setCheckpointer
+	 * @param checkpointer receives a checkpoint of the walk every so often while run() is going on. May be null.
+	 */
+	public void setCheckpointer(TwoSAT_WalkCheckpointer checkpointer) {
+		this.checkpointer = checkpointer;
+	}
+
+	/**
+	 * Method: stateSize
+	 * @return the size of the checkpoint written by writeState(), in bytes
+	 */
+	int stateSize() {
+		return 4 * 4 + 8 * 5 + 4 * (1 + this.numOfFalse) + 4 + 8 * this.bits.length + 4 + 8 * this.bits.length;
+	}
+
+	/**
+	 * Method: writeState
+	 *         Writes a checkpoint. Format (big-endian):
+	 *
+	 *             int magic, int version, long fingerprint of the clauses, int maxVar, int numOfClauses,
+	 *             long rng, long restart, long step, long numOfFlips,
+	 *             int numOfFalse, int[numOfFalse] false clauses (in their current order),
+	 *             int no. of words, long[] assignment,
+	 *             int bestNumOfFalse, long[] best assignment (all zero if there is none yet)
+	 * @param buf must have at least stateSize() bytes left
+	 */
+	void writeState(ByteBuffer buf) {
+		buf.putInt(CHECKPOINT_MAGIC).putInt(CHECKPOINT_VERSION).putLong(this.fingerprint);
+		buf.putInt(this.store.maxVar).putInt(this.store.numOfClauses);
+		buf.putLong(this.rng).putLong(this.restart).putLong(this.step).putLong(this.numOfFlips);
+		buf.putInt(this.numOfFalse);
+		for (int k = 0; k < this.numOfFalse; k++) buf.putInt(this.falseClauses.get(k));
+		buf.putInt(this.bits.length);
+		for (long word : this.bits) buf.putLong(word);
+		buf.putInt(this.bestNumOfFalse);
+		for (int w = 0; w < this.bits.length; w++) buf.putLong(this.best == null ? 0L : this.best[w]);
+	}
+
+	/**
+	 * Method: resume
+	 *         Restores the state saved in a checkpoint file. The next call to run() continues exactly where the
+	 *         checkpointed walk was.
+	 * @param fileName
+	 * @throws IOException if the file cannot be read, or if it belongs to different clauses
+	 */
+	public void resume(String fileName) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 1 << 16));
+		try {
+			if (in.readInt() != CHECKPOINT_MAGIC || in.readInt() != CHECKPOINT_VERSION) throw new IOException(fileName + " is not a checkpoint file");
+			if (in.readLong() != this.fingerprint || in.readInt() != this.store.maxVar || in.readInt() != this.store.numOfClauses) {
+				throw new IOException(fileName + " is a checkpoint of different clauses");
+			}
+			this.rng = in.readLong();
+			this.restart = in.readLong();
+			this.step = in.readLong();
+			this.numOfFlips = in.readLong();
+			this.numOfFalse = in.readInt();
+			this.falsePos.fill(-1);
+			for (int k = 0; k < this.numOfFalse; k++) {
+				int c = in.readInt();
+				this.falseClauses.set(k, c);
+				this.falsePos.set(c, k);
+			}
+			if (in.readInt() != this.bits.length) throw new IOException(fileName + " is a checkpoint of different clauses");
+			for (int w = 0; w < this.bits.length; w++) this.bits[w] = in.readLong();
+			this.bestNumOfFalse = in.readInt();
+			this.best = new long[this.bits.length];
+			for (int w = 0; w < this.bits.length; w++) this.best[w] = in.readLong();
+			if (this.bestNumOfFalse == Integer.MAX_VALUE) this.best = null;
+			this.resumed = true;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Method: fingerprint
+	 * @return a hash of the clauses (in order), so that a checkpoint is never resumed against different clauses
+	 */
+	private long fingerprint() {
+		long h = 0x9E3779B97F4A7C15L;
+		for (int c = 0; c < this.store.numOfClauses; c++) {
+			h = (h ^ (((long) this.store.lit1.get(c) << 32) | (this.store.lit2.get(c) & 0xFFFFFFFFL))) * 0xFF51AFD7ED558CCDL;
+			h ^= h >>> 33;
+		}
+		return h;
+	}
+
+	/**
+	 * Method: randomize
+	 *         Chooses a random assignment for every variable.
+	 */
+	private void randomize() {
+		for (int w = 0; w < this.bits.length; w++) this.bits[w] = nextLong();
+	}
+
+	/**
+	 * Method: evaluateAll
+	 *         Full rescan: re-computes the set of false clauses from scratch.
+	 */
+	void evaluateAll() {
+		this.numOfFalse = this.evaluator.collectFalse(this.bits, this.falseClauses, this.falsePos);
+		computeBreakCounts();
+	}
+
+	/**
+	 * Method: computeBreakCounts
+	 *         Re-computes all break counts from scratch (if the strategy uses them).
+	 */
+	private void computeBreakCounts() {
+		if (this.breakCount == null) return;
+		this.breakCount.fill(0);
+		for (int c = 0; c < this.store.numOfClauses; c++) addBreak(c, 1);
+	}
+
+	/**
+	 * Method: addBreak
+	 *         If exactly one literal of clause c is true, adds delta to the break count of its variable.
+	 *         Clauses over a single variable are special: a unit clause "x OR x" breaks whenever it is true, and a
+	 *         tautology "x OR ~x" never breaks.
+	 * @param c
+	 * @param delta
+	 */
+	private void addBreak(int c, int delta) {
+		int a = this.store.lit1.get(c), b = this.store.lit2.get(c);
+		if ((a >>> 1) == (b >>> 1)) {
+			if (a == b && TwoSAT_ClauseStore.isTrue(this.bits, a)) this.breakCount.set(a >>> 1, this.breakCount.get(a >>> 1) + delta);
+			return;
+		}
+		boolean trueA = TwoSAT_ClauseStore.isTrue(this.bits, a), trueB = TwoSAT_ClauseStore.isTrue(this.bits, b);
+		if (trueA != trueB) {
+			int v = (trueA ? a : b) >>> 1;
+			this.breakCount.set(v, this.breakCount.get(v) + delta);
+		}
+	}
+
+	/**
+	 * Method: breakCountsConsistent
+	 *         Self-check: compares the incrementally maintained break counts with a recount from scratch.
+	 * @return true if they agree (or if break counts are not maintained)
+	 */
+	boolean breakCountsConsistent() {
+		if (this.breakCount == null) return true;
+		int[] incremental = new int[this.store.maxVar + 1];
+		for (int v = 0; v <= this.store.maxVar; v++) incremental[v] = this.breakCount.get(v);
+		computeBreakCounts();
+		for (int v = 0; v <= this.store.maxVar; v++) {
+			if (incremental[v] != this.breakCount.get(v)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Method: isModel
+	 *         Verifies the current assignment with a full rescan (rather than trusting the incremental bookkeeping).
+	 * @return true if the current assignment satisfies every clause
+	 */
+	public boolean isModel() {
+		return this.evaluator.isModel(this.bits);
+	}
+
+	/**
+	 * Method: flip
+	 *         Flips variable v and re-evaluates only the clauses that contain it.
+	 * @param v
+	 */
+	void flip(int v) {
+		TwoSAT_Storage.Ints occ = this.store.occ;
+		long start = this.store.occStart.get(v), end = this.store.occStart.get(v + 1);
+
+		/* Break counts: take out the clauses of v before the flip and add them back after it. A clause with v in
+		 * both literals (unit or tautology) appears twice in a row in occ, but must only be counted once. */
+		if (this.breakCount != null) {
+			for (long k = start; k < end; k++) {
+				if (k == start || occ.get(k) != occ.get(k - 1)) addBreak(occ.get(k), -1);
+			}
+		}
+		TwoSAT_ClauseStore.flip(this.bits, v);
+		this.numOfFlips++;
+		if (this.breakCount != null) {
+			for (long k = start; k < end; k++) {
+				if (k == start || occ.get(k) != occ.get(k - 1)) addBreak(occ.get(k), 1);
+			}
+		}
+
+		for (long k = start; k < end; k++) {
+			int c = occ.get(k);
+			boolean satisfied = this.store.isSatisfied(this.bits, c);
+			int pos = this.falsePos.get(c);
+			if (satisfied && pos >= 0) {
+				/* Remove c from the false clauses by moving the last false clause into its slot. */
+				int last = this.falseClauses.get(--this.numOfFalse);
+				this.falseClauses.set(pos, last);
+				this.falsePos.set(last, pos);
+				this.falsePos.set(c, -1);
+			}
+			else if (!satisfied && pos < 0) {
+				this.falsePos.set(c, this.numOfFalse);
+				this.falseClauses.set(this.numOfFalse++, c);
+			}
+		}
+		//end for
+	}
+
+	/**
+	 * Method: nextLong
+	 * @return the next value of the xorshift64* random number generator
+	 */
+	long nextLong() {
+		this.rng ^= this.rng >>> 12;
+		this.rng ^= this.rng << 25;
+		this.rng ^= this.rng >>> 27;
+		return this.rng * 0x2545F4914F6CDD1DL;
+	}
+
+	/**
+	 * Method: nextInt
+	 * @param bound
+	 * @return a random int from 0 (inclusive) to bound (exclusive)
+	 */
+	private int nextInt(int bound) {
+		return (int) (((nextLong() >>> 32) * bound) >>> 32);
+	}
+
+	/**
+	 * Method: getValue
+	 * @param v variable
+	 * @return the current value of variable v
+	 */
+	public boolean getValue(int v) {
+		return TwoSAT_ClauseStore.getValue(this.bits, v);
+	}
+
+	/**
+	 * Method: getModel
+	 * @return the current assignment as a bitset, indexed by variable (the walk's own buffer, not a copy)
+	 */
+	long[] getModel() {
+		return this.bits;
+	}
+
+	/**
+	 * Method: setStopFlag
+	 * @param stop flag that another thread can set to make run() give up (and return false) early
+	 */
+	public void setStopFlag(AtomicBoolean stop) {
+		this.stop = stop;
+	}
+
+	/**
+	 * Method: getBestNumOfFalse
+	 * @return the no. of false clauses of the best assignment seen so far (only tracked while checkpointing)
+	 */
+	public int getBestNumOfFalse() {
+		return this.bestNumOfFalse;
+	}
+
+	/**
+	 * Method: getRestart
+	 * @return the outer loop counter (1, 2, 4, ...) at the last checkpoint or resume
+	 */
+	public long getRestart() {
+		return this.restart;
+	}
+
+	/**
+	 * Method: getStep
+	 * @return the inner loop counter at the last checkpoint or resume
+	 */
+	public long getStep() {
+		return this.step;
+	}
+
+	/**
+	 * Method: getNumOfFlips
+	 * @return total no. of flips so far
+	 */
+	public long getNumOfFlips() {
+		return this.numOfFlips;
+	}
+}
@@ -31,6 +31,7 @@ public class TwoSAT_Papadimitriou {
 	private int numOfVars;				//total number of variables
 	private int numOfClauses;			//total number of clauses
 	private ArrayList<Clause> falseClausesAL;	//Keeps track of false Clauses (used by papadimitriou() method)
+	private TwoSAT_ClauseNormalizer normalizer;	//drops duplicate clauses and tautologies while reading the file
 
 	private static boolean debugOn;
 
@@ -57,69 +58,69 @@ public class TwoSAT_Papadimitriou {
 	private void build() {
 
 		try {
-			BufferedReader rd = new BufferedReader(new FileReader(new File(fileName)));
-
-            //Read the first line, which contains info re: total no. of variables and total no. clauses
-            String line = rd.readLine();
-
-            StringTokenizer tokenizer = new StringTokenizer(line);
-            this.numOfVars = Integer.parseInt(tokenizer.nextToken());	//1st entry in the first line contains total no. of variables
-
-            /* Depending on the txt file, there may or may not be a 2nd entry in the first line. If there is,
-             * then it contains the total no. of clauses. If there isn't, then total no. of vars = total no. of clauses. */
-            if (tokenizer.hasMoreTokens()) this.numOfClauses = Integer.parseInt(tokenizer.nextToken());
-            else this.numOfClauses = this.numOfVars;
-
-            System.out.printf("No. of clauses BEFORE pruning: %s\nNo. of variables BEFORE pruning: %s\n", this.numOfClauses, this.numOfVars);
-
-            this.varArr = new Variable[numOfVars + 2];	//Assumes that Variables will be indexed from 1 to numOfVars.
-//            System.out.println(this.varArr.length);
-            this.clauseArr = new Clause[numOfClauses];	//Assumes that Clauses will be indexed from 0 to numOfClauses - 1.
-
-            int index = 0;
-            while (index < this.numOfClauses) {	//read clause from each subsequent line
-            	line = rd.readLine();
-                tokenizer = new StringTokenizer(line);
-
-                /* Read the two int values from this line.
-                 * These int values could be positive or negative.  For example, the following line:
-                 *
-                 * -10492 51342
-                 *
-                 * indicates that the variable NAMES are 10492 and 51341, and the minus sign indicates the boolean value NOT.
-                 * The space between the two integers indicates the boolean value OR.
-                 * So it means: NOT 10492 OR 51342.
-                 *
-                 * To make this easier to understand, imagine the following clause:
-                 * -A B
-                 * This would mean NOT A OR B. */
-                int intValue1 = Integer.parseInt(tokenizer.nextToken());
-                setOfInts.add(intValue1);	//Remember this int value by adding to set. Auto-takes care of any duplicates
-                Variable var1 = this.getOrCreateVariable(intValue1);	//custom method
-
-                int intValue2 = Integer.parseInt(tokenizer.nextToken());
-                setOfInts.add(intValue2);	//Remember this int value by adding to set. Auto-takes care of any duplicates
-                Variable var2 = this.getOrCreateVariable(intValue2);
-
-                Clause c = new Clause(index, var1, intValue1, var2, intValue2);	//Construct new Clause (inner nested class)
-                clauseArr[index++] = c;	//Add Clause to Array
-
-                /* For efficiency, we'll update this map which maps each Variable's label no.
-                 * (which equals the absolute value of intValue1 and of intValue2) to a HashSet (list) of
-                 * Clauses that contain that label no. Doing this now makes it easier later to prune
-                 * all Clauses that contain a specific Variable. */
-                HashSet<Clause> clauseHS1 = clauseMap.get(var1.label);
-                HashSet<Clause> clauseHS2 = clauseMap.get(var2.label);
-                if (clauseHS1 == null) clauseHS1 = new HashSet<Clause>();
-                if (clauseHS2 == null) clauseHS2 = new HashSet<Clause>();
-                clauseHS1.add(c);
-                clauseHS2.add(c);
-                clauseMap.put(var1.label, clauseHS1);
-                clauseMap.put(var2.label, clauseHS2);
-            }
-            //end while
+			/* Gzip-compressed files and huge txt files are loaded in memory by the multi-threaded loaders
+			 * (see TwoSAT_ClauseList.load()). Everything else is read line by line below. */
+			if (TwoSAT_ClauseList.isBulkLoad(fileName)) {
+				TwoSAT_ClauseList clauses = TwoSAT_ClauseList.load(fileName);
+				this.numOfVars = clauses.numOfVars;
+				this.numOfClauses = clauses.numOfClauses;
+				System.out.printf("No. of clauses BEFORE pruning: %s\nNo. of variables BEFORE pruning: %s\n", this.numOfClauses, this.numOfVars);
+
+				this.varArr = new Variable[numOfVars + 2];
+				this.clauseArr = new Clause[numOfClauses];
+				this.normalizer = new TwoSAT_ClauseNormalizer(this.numOfClauses);
+				for (int index = 0; index < this.numOfClauses; index++) {
+					addClause(index, clauses.literals[2 * index], clauses.literals[2 * index + 1]);
+				}
+			}
+			else {
+				BufferedReader rd = new BufferedReader(new FileReader(new File(fileName)));
+
+				//Read the first line, which contains info re: total no. of variables and total no. clauses
+				String line = rd.readLine();
+
+				StringTokenizer tokenizer = new StringTokenizer(line);
+				this.numOfVars = Integer.parseInt(tokenizer.nextToken());	//1st entry in the first line contains total no. of variables
+
+				/* Depending on the txt file, there may or may not be a 2nd entry in the first line. If there is,
+				 * then it contains the total no. of clauses. If there isn't, then total no. of vars = total no. of clauses. */
+				if (tokenizer.hasMoreTokens()) this.numOfClauses = Integer.parseInt(tokenizer.nextToken());
+				else this.numOfClauses = this.numOfVars;
+
+				System.out.printf("No. of clauses BEFORE pruning: %s\nNo. of variables BEFORE pruning: %s\n", this.numOfClauses, this.numOfVars);
+
+				this.varArr = new Variable[numOfVars + 2];	//Assumes that Variables will be indexed from 1 to numOfVars.
+				this.clauseArr = new Clause[numOfClauses];	//Assumes that Clauses will be indexed from 0 to numOfClauses - 1.
+				this.normalizer = new TwoSAT_ClauseNormalizer(this.numOfClauses);
+
+				int index = 0;
+				while (index < this.numOfClauses) {	//read clause from each subsequent line
+					line = rd.readLine();
+					tokenizer = new StringTokenizer(line);
+
+					/* Read the two int values from this line.
+					 * These int values could be positive or negative.  For example, the following line:
+					 *
+					 * -10492 51342
+					 *
+					 * indicates that the variable NAMES are 10492 and 51341, and the minus sign indicates the boolean value NOT.
+					 * The space between the two integers indicates the boolean value OR.
+					 * So it means: NOT 10492 OR 51342.
+					 *
+					 * To make this easier to understand, imagine the following clause:
+					 * -A B
+					 * This would mean NOT A OR B. */
+					int intValue1 = Integer.parseInt(tokenizer.nextToken());
+					int intValue2 = Integer.parseInt(tokenizer.nextToken());
+					addClause(index++, intValue1, intValue2);	//custom method
+				}
+				//end while
+				rd.close();
+			}
+			//end if/else
+			System.out.println(this.normalizer);
+			this.normalizer = null;	//no longer needed. Let the hash set be garbage collected.
 
-            rd.close();
             if (debugOn) {
             	System.out.println("All clauses BEFORE pruning:");
             	for (Clause c : this.clauseArr) {
@@ -276,6 +277,41 @@ public class TwoSAT_Papadimitriou {
 	}
 	//end private void build
 
+	/**
+	 * Method: addClause
+	 *         Constructs the Clause (intValue1 OR intValue2) and registers it under the given index.
+	 *         Duplicate clauses and tautologies are dropped by the normalizer; their slot in clauseArr stays null.
+	 * @param index     the Clause's label no.
+	 * @param intValue1 first literal of the clause. Could have a minus sign or not.
+	 * @param intValue2 second literal of the clause. Could have a minus sign or not.
+	 */
+	private void addClause(int index, int intValue1, int intValue2) {
+		if (!this.normalizer.admit(intValue1, intValue2)) return;	//duplicate or tautology
+
+		setOfInts.add(intValue1);	//Remember this int value by adding to set. Auto-takes care of any duplicates
+		Variable var1 = this.getOrCreateVariable(intValue1);	//custom method
+
+		setOfInts.add(intValue2);	//Remember this int value by adding to set. Auto-takes care of any duplicates
+		Variable var2 = this.getOrCreateVariable(intValue2);
+
+		Clause c = new Clause(index, var1, intValue1, var2, intValue2);	//Construct new Clause (inner nested class)
+		clauseArr[index] = c;	//Add Clause to Array
+
+		/* For efficiency, we'll update this map which maps each Variable's label no.
+		 * (which equals the absolute value of intValue1 and of intValue2) to a HashSet (list) of
+		 * Clauses that contain that label no. Doing this now makes it easier later to prune
+		 * all Clauses that contain a specific Variable. */
+		HashSet<Clause> clauseHS1 = clauseMap.get(var1.label);
+		HashSet<Clause> clauseHS2 = clauseMap.get(var2.label);
+		if (clauseHS1 == null) clauseHS1 = new HashSet<Clause>();
+		if (clauseHS2 == null) clauseHS2 = new HashSet<Clause>();
+		clauseHS1.add(c);
+		clauseHS2.add(c);
+		clauseMap.put(var1.label, clauseHS1);
+		clauseMap.put(var2.label, clauseHS2);
+	}
+	//end private void addClause
+
 	/**
 	 * Method: getOrCreateVariable
 	 * @param intValue given integer value. Could have a minus sign or not.
@@ -325,10 +361,7 @@ public class TwoSAT_Papadimitriou {
 
 			//Inner loop is over. We haven't yet found a satisfiable assignment for each variable.
 			//Choose another random initial assignment from scratch and get ready for the next outer loop
-			for (Clause c : this.clauseAL) {
-				c.var1.value = new Random().nextInt(2) == 0 ? false : true;
-				c.var2.value = new Random().nextInt(2) == 0 ? false : true;
-			}
+			this.randomizeVariables();
 		}
 		//end for i
 
@@ -336,12 +369,160 @@ public class TwoSAT_Papadimitriou {
 		return false;
 	}
 
+	/**
+	 * Method: randomizeVariables
+	 *         Assigns a random boolean value to every Variable that appears in a surviving Clause.
+	 */
+	void randomizeVariables() {
+		for (Clause c : this.clauseAL) {
+			c.var1.value = new Random().nextInt(2) == 0 ? false : true;
+			c.var2.value = new Random().nextInt(2) == 0 ? false : true;
+		}
+	}
+
+	/**
+	 * Method: papadimitriouPacked
+	 *         Same random walk as papadimitriou(), but run on the packed backend (see TwoSAT_PackedWalk.java):
+	 *         a long[] bitset assignment and parallel arrays of literal codes instead of Variable and Clause objects.
+	 * @return true if the clauses are satisfiable, false otherwise.
+	 */
+	public boolean papadimitriouPacked() {
+		return papadimitriouPacked(new TwoSAT_PickStrategy.RandomPick());
+	}
+
+	/**
+	 * Method: papadimitriouPacked
+	 *         Same as papadimitriouPacked(), with a different rule for choosing which variable of a false clause to
+	 *         flip (e.g. new TwoSAT_PickStrategy.WalkSAT(0.5) or new TwoSAT_PickStrategy.ProbSAT(1, 2.3)).
+	 * @param strategy
+	 * @return true if the clauses are satisfiable, false otherwise.
+	 */
+	public boolean papadimitriouPacked(TwoSAT_PickStrategy strategy) {
+		TwoSAT_PackedWalk walk = new TwoSAT_PackedWalk(this.toClauseStore(), System.nanoTime());
+		walk.setStrategy(strategy);
+		return walk.run() && walk.isModel();	//double-check the model with a full rescan before reporting it
+	}
+
+	/**
+	 * Method: papadimitriouCheckpointed
+	 *         Same as papadimitriouPacked(), but checkpoints the walk to the given file every so often (on a background
+	 *         thread, see TwoSAT_WalkCheckpointer.java). If the file already exists, e.g. because an earlier run was
+	 *         killed, the walk resumes from it and makes exactly the flips the interrupted run would have made.
+	 *         The file is deleted once the run is over.
+	 * @param checkpointFile
+	 * @param intervalMillis minimum time between two checkpoints, in millisecs
+	 * @return true if the clauses are satisfiable, false otherwise.
+	 * @throws IOException if the existing checkpoint cannot be read or belongs to different clauses. Failed
+	 *         checkpoint writes are only reported: they do not cost the run its verdict.
+	 */
+	public boolean papadimitriouCheckpointed(String checkpointFile, long intervalMillis) throws IOException {
+		TwoSAT_PackedWalk walk = new TwoSAT_PackedWalk(this.toClauseStore(), System.nanoTime());
+		if (new File(checkpointFile).exists()) {
+			walk.resume(checkpointFile);
+			System.out.printf("Resuming from %s: restart %s, flip %s (%s flips so far)\n", checkpointFile,
+					walk.getRestart(), walk.getStep(), walk.getNumOfFlips());
+		}
+		TwoSAT_WalkCheckpointer checkpointer = new TwoSAT_WalkCheckpointer(checkpointFile, intervalMillis);
+		walk.setCheckpointer(checkpointer);
+		boolean satisfiable;
+		try {
+			satisfiable = walk.run() && walk.isModel();
+		} finally {
+			/* Also stops the background thread if the walk failed. The checkpoint file is then kept, to resume from. */
+			try {
+				checkpointer.close();
+			} catch (IOException e) {
+				System.out.printf("Last checkpoint could not be written: %s\n", e.getMessage());	//the verdict stands regardless
+			}
+		}
+		//end try/finally
+		System.out.println(checkpointer);
+		new File(checkpointFile).delete();
+		return satisfiable;
+	}
+
+	/**
+	 * Method: papadimitriouOffHeap
+	 *         For instances too big for the heap. Same walk as papadimitriouPacked(), without the object graph: the
+	 *         clauses are streamed off-heap (see TwoSAT_OffHeapFormula.java), and the walk keeps its occurrence lists
+	 *         and false clause list in the formula's arena. All of it is freed before returning.
+	 * @param fileName
+	 * @return true if the clauses are satisfiable, false otherwise.
+	 * @throws IOException
+	 */
+	public static boolean papadimitriouOffHeap(String fileName) throws IOException {
+		TwoSAT_OffHeapFormula formula = new TwoSAT_OffHeapFormula(fileName);
+		try {
+			TwoSAT_PackedWalk walk = new TwoSAT_PackedWalk(new TwoSAT_ClauseStore(formula), System.nanoTime());
+			boolean satisfiable = walk.run() && walk.isModel();
+			System.out.printf("Walk: %s clauses, %.1f MB off-heap\n", formula.numOfClauses, formula.getAllocatedBytes() / 1048576.0);
+			return satisfiable;
+		} finally {
+			formula.close();
+		}
+	}
+
+	/**
+	 * Method: papadimitriouRenumbered
+	 *         Same as papadimitriouPacked(), but first renumbers the variables and reorders the clauses for memory
+	 *         locality (see TwoSAT_Renumbering.java). The model is mapped back to the original labels and checked
+	 *         against the original clauses.
+	 * @return true if the clauses are satisfiable, false otherwise.
+	 * @throws IllegalStateException if the mapped-back model fails that check (a bug in the renumbering, not a verdict)
+	 */
+	public boolean papadimitriouRenumbered() {
+		int[] signedLiterals = this.toSignedLiterals();
+		TwoSAT_Renumbering renumbering = new TwoSAT_Renumbering(signedLiterals, this.clauseAL.size());
+		TwoSAT_PackedWalk walk = new TwoSAT_PackedWalk(new TwoSAT_ClauseStore(renumbering.literals, renumbering.numOfClauses), System.nanoTime());
+		if (!walk.run()) return false;
+		long[] model = renumbering.toOriginal(walk.getModel());
+		if (!new TwoSAT_BulkEvaluator(new TwoSAT_ClauseStore(signedLiterals, this.clauseAL.size())).isModel(model)) {
+			throw new IllegalStateException("Model mapped back from the renumbering does not satisfy the original clauses");
+		}
+		return true;
+	}
+
+	/**
+	 * Method: papadimitriouByComponents
+	 *         Splits the surviving clauses into independent subformulas (see TwoSAT_Components.java) and runs the
+	 *         packed random walk on each of them in parallel, each with its own n-scaled budget.
+	 * @return true if the clauses are satisfiable, false otherwise.
+	 */
+	public boolean papadimitriouByComponents() {
+		TwoSAT_ClauseStore store = this.toClauseStore();
+		TwoSAT_Components components = new TwoSAT_Components(store);
+		boolean satisfiable = components.solve(Runtime.getRuntime().availableProcessors(), System.nanoTime());
+		return satisfiable && new TwoSAT_BulkEvaluator(store).isModel(components.getModel());	//double-check the merged model
+	}
+
+	/**
+	 * Method: toClauseStore
+	 * @return the surviving (i.e. pruned) clauses as a struct-of-arrays clause store
+	 */
+	TwoSAT_ClauseStore toClauseStore() {
+		return new TwoSAT_ClauseStore(toSignedLiterals(), this.clauseAL.size());
+	}
+
+	/**
+	 * Method: toSignedLiterals
+	 * @return the surviving (i.e. pruned) clauses, two signed literals per clause
+	 */
+	int[] toSignedLiterals() {
+		int[] signedLiterals = new int[2 * this.clauseAL.size()];
+		int i = 0;
+		for (Clause c : this.clauseAL) {
+			signedLiterals[i++] = c.sign1 == true ? c.var1.label : -c.var1.label;
+			signedLiterals[i++] = c.sign2 == true ? c.var2.label : -c.var2.label;
+		}
+		return signedLiterals;
+	}
+
 	/**
 	 * Method: allClausesAreTrue
 	 * @return true if all clauses are satisfiable with the current variable assignments. Return false otherwise.
 	 *         Also keeps track of any false clauses in a global ArrayList.
 	 */
-	private boolean allClausesAreTrue() {
+	boolean allClausesAreTrue() {
 
 		/*Compute the Truth value of each Clause. For example, if a clause is as follows:
 		 * -1205 2010
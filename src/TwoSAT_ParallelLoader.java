@@ -0,0 +1,231 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Class: TwoSAT_ParallelLoader.java
+ *
+ *  This class - multi-threaded loader for huge (plain text) data files.
+ *
+ *  The file is split into byte ranges whose boundaries are moved forward to the next newline, so that every range
+ *  holds whole lines only. Each worker thread reads its own range with positional reads (no shared file pointer)
+ *  and parses it into its own primitive clause block. The blocks are then concatenated in file order, one
+ *  System.arraycopy per block.
+ *
+ *  The result is identical to what the sequential readers in TwoSAT_SCC.build() and TwoSAT_Papadimitriou.build()
+ *  produce. Run main() on a data file to check this and to compare the timings.
+ */
+public class TwoSAT_ParallelLoader {
+
+	private static final int READ_SIZE = 1 << 22;		//each worker reads its range in pieces of this size (4 MB)
+	private static final int RANGES_PER_THREAD = 4;		//more ranges than threads, so that fast workers pick up the slack
+
+	private String fileName;	//name of txt file to read data from
+	private int numOfThreads;	//no. of worker threads
+
+	/**
+	 * 1-arg constructor. Uses one worker thread per available core.
+	 * @param fileName
+	 */
+	public TwoSAT_ParallelLoader(String fileName) {
+		this(fileName, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * 2-arg constructor
+	 * @param fileName
+	 * @param numOfThreads no. of worker threads
+	 */
+	public TwoSAT_ParallelLoader(String fileName, int numOfThreads) {
+		this.fileName = fileName;
+		this.numOfThreads = numOfThreads;
+	}
+
+	/**
+	 * Method: load
+	 * @return all clauses in the file
+	 * @throws IOException
+	 */
+	public TwoSAT_ClauseList load() throws IOException {
+		long startTime = System.currentTimeMillis();
+		RandomAccessFile raf = new RandomAccessFile(this.fileName, "r");
+		FileChannel channel = raf.getChannel();
+		ExecutorService workers = Executors.newFixedThreadPool(this.numOfThreads);
+
+		try {
+			long size = channel.size();
+
+			/* Parse the header line. The clause lines start right after it. */
+			byte[] first = new byte[(int) Math.min(size, 1 << 16)];
+			readFully(channel, ByteBuffer.wrap(first), 0);
+			int headerEnd = indexOf(first, 0, first.length, (byte) '\n');
+			int[] header = TwoSAT_ClauseList.parseHeader(first, 0, headerEnd < 0 ? first.length : headerEnd);
+			long dataStart = headerEnd < 0 ? size : headerEnd + 1;
+
+			/* Split the rest of the file into ranges aligned to newlines. */
+			int numOfRanges = (int) Math.max(1, Math.min((long) this.numOfThreads * RANGES_PER_THREAD, (size - dataStart) / (1 << 16)));
+			long[] bounds = new long[numOfRanges + 1];
+			bounds[0] = dataStart;
+			bounds[numOfRanges] = size;
+			for (int i = 1; i < numOfRanges; i++) {
+				bounds[i] = nextLineStart(channel, Math.max(bounds[i - 1], dataStart + (size - dataStart) * i / numOfRanges), size);
+			}
+
+			/* Parse every range in parallel. Each range gets its own block. */
+			ArrayList<Future<TwoSAT_ClauseList.IntBlock>> results = new ArrayList<>();
+			for (int i = 0; i < numOfRanges; i++) {
+				final long from = bounds[i], to = bounds[i + 1];
+				results.add(workers.submit(new Callable<TwoSAT_ClauseList.IntBlock>() {
+					@Override
+					public TwoSAT_ClauseList.IntBlock call() throws IOException {
+						return parseRange(channel, from, to);
+					}
+				}));
+			}
+
+			/* Concatenate the blocks in file order: one copy per block, not per clause. */
+			int numOfClauses = header[1];
+			int[] literals = new int[2 * numOfClauses];
+			int filled = 0;
+			for (Future<TwoSAT_ClauseList.IntBlock> f : results) {
+				TwoSAT_ClauseList.IntBlock block = f.get();
+				int len = Math.min(block.size, literals.length - filled);
+				System.arraycopy(block.ints, 0, literals, filled, len);
+				filled += len;
+			}
+			if (filled < literals.length) {
+				throw new IOException(String.format("%s: expected %s clauses but found only %s", this.fileName, numOfClauses, filled / 2));
+			}
+
+			long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+			System.out.printf("Parsed %s (%.1f MB) on %s threads in %s ms: %.1f MB/s, %.0f clauses/s\n",
+					this.fileName, size / 1e6, this.numOfThreads, elapsed, size / 1e3 / elapsed, numOfClauses * 1000.0 / elapsed);
+			return new TwoSAT_ClauseList(header[0], numOfClauses, literals);
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("Interrupted while loading " + this.fileName);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+			throw new IOException("Failed to parse " + this.fileName, e.getCause());
+		} finally {
+			workers.shutdownNow();
+			raf.close();
+		}
+		//end try/catch
+	}
+
+	/**
+	 * Method: parseRange
+	 *         Run by a worker thread. Reads the given byte range piece by piece and parses it.
+	 * @param channel
+	 * @param from offset of the first byte of the range (the start of a line)
+	 * @param to   offset one past the last byte of the range (the end of a line, or the end of the file)
+	 * @return the clauses in the range
+	 * @throws IOException
+	 */
+	private TwoSAT_ClauseList.IntBlock parseRange(FileChannel channel, long from, long to) throws IOException {
+		byte[] buf = new byte[(int) Math.min(READ_SIZE, to - from)];
+		ByteBuffer bb = ByteBuffer.wrap(buf);
+		TwoSAT_ClauseList.IntBlock block = new TwoSAT_ClauseList.IntBlock((int) Math.min(Integer.MAX_VALUE / 2, (to - from) / 6));
+
+		long pos = from;
+		int carryLen = 0;	//partial line left over at the start of buf from the previous piece
+		while (pos < to) {
+			int want = (int) Math.min(buf.length - carryLen, to - pos);
+			bb.clear();
+			bb.position(carryLen);
+			bb.limit(carryLen + want);
+			readFully(channel, bb, pos);
+			pos += want;
+			int len = carryLen + want;
+
+			/* Parse up to the last newline; keep the rest for the next piece. */
+			int cut = len;
+			if (pos < to) {
+				while (cut > 0 && buf[cut - 1] != '\n') cut--;
+				if (cut == 0) throw new IOException(this.fileName + ": line longer than " + buf.length + " bytes");
+			}
+			TwoSAT_ClauseList.parseLines(buf, 0, cut, block);
+			carryLen = len - cut;
+			System.arraycopy(buf, cut, buf, 0, carryLen);
+		}
+		//end while
+		return block;
+	}
+
+	/**
+	 * Method: nextLineStart
+	 * @param channel
+	 * @param pos  any offset in the file
+	 * @param size size of the file
+	 * @return the offset of the first line that starts at or after pos
+	 * @throws IOException
+	 */
+	private static long nextLineStart(FileChannel channel, long pos, long size) throws IOException {
+		if (pos == 0) return 0;
+		byte[] window = new byte[4096];
+		long p = pos - 1;	//if the byte just before pos is a newline, pos already starts a line
+		while (p < size) {
+			int len = (int) Math.min(window.length, size - p);
+			readFully(channel, ByteBuffer.wrap(window, 0, len), p);
+			int nl = indexOf(window, 0, len, (byte) '\n');
+			if (nl >= 0) return p + nl + 1;
+			p += len;
+		}
+		return size;
+	}
+
+	/**
+	 * Method: readFully
+	 *         Positional read that fills the remaining space of the buffer. Safe to call from several threads.
+	 * @param channel
+	 * @param bb
+	 * @param pos
+	 * @throws IOException
+	 */
+	private static void readFully(FileChannel channel, ByteBuffer bb, long pos) throws IOException {
+		while (bb.hasRemaining()) {
+			int read = channel.read(bb, pos);
+			if (read < 0) throw new IOException("Unexpected end of file at offset " + pos);
+			pos += read;
+		}
+	}
+
+	/**
+	 * Method: indexOf
+	 * @return index of the first occurrence of b in buf[from, to), or -1 if none.
+	 */
+	private static int indexOf(byte[] buf, int from, int to, byte b) {
+		for (int i = from; i < to; i++) {
+			if (buf[i] == b) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Method: main
+	 *         Loads each given data file both sequentially and in parallel, and checks that the clauses are identical.
+	 * @param args
+	 */
+	public static void main(String[] args) throws IOException {
+		for (String s : args) {
+			System.out.printf("==========================================================\nLoading %s...\n", s);
+			long startTime = System.currentTimeMillis();
+			TwoSAT_ClauseList sequential = TwoSAT_ClauseList.readText(s);
+			System.out.printf("Sequential reader: %s ms\n", System.currentTimeMillis() - startTime);
+
+			TwoSAT_ClauseList parallel = new TwoSAT_ParallelLoader(s).load();
+			boolean identical = sequential.numOfVars == parallel.numOfVars
+					&& sequential.numOfClauses == parallel.numOfClauses
+					&& Arrays.equals(sequential.literals, parallel.literals);
+			System.out.printf("Identical clauses? %s\n", identical);
+		}
+	}
+}
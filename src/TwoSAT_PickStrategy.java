@@ -0,0 +1,146 @@
+/** Interface: TwoSAT_PickStrategy.java
+ *
+ *  This interface - decides which variable of a false clause TwoSAT_PackedWalk flips next.
+ *
+ *  The walk picks a random false clause and asks its strategy which of the clause's two literals to flip. All
+ *  strategies draw their random numbers from the walk itself, so a run is reproducible from its seed (and from a
+ *  checkpoint, as long as it is resumed with the same strategy).
+ *
+ *  The focused strategies look at break counts: the break count of variable v is the no. of clauses that are
+ *  currently true only because of v, i.e. that would become false if v were flipped. The walk keeps them up to date
+ *  incrementally after every flip, but only for strategies that ask for them (usesBreakCounts()).
+ *
+ *  1) RandomPick: Papadimitriou's coin flip. Ignores break counts.
+ *  2) WalkSAT:    flips a variable with break count 0 if there is one ("freebie"). Otherwise flips a random one with
+ *                 probability noise, and the one with the smaller break count (ties broken at random) otherwise.
+ *  3) ProbSAT:    flips variable v with probability proportional to (eps + break(v))^-cb.
+ */
+public interface TwoSAT_PickStrategy {
+
+	/**
+	 * Method: usesBreakCounts
+	 * @return true if the walk must maintain break counts for this strategy
+	 */
+	boolean usesBreakCounts();
+
+	/**
+	 * Method: pick
+	 * @param walk the walk (source of random numbers and break counts)
+	 * @param lit1 literal code of the first literal of a false clause
+	 * @param lit2 literal code of the second literal
+	 * @return lit1 or lit2: the literal whose variable should be flipped
+	 */
+	int pick(TwoSAT_PackedWalk walk, int lit1, int lit2);
+
+	/**
+	 * Class: RandomPick
+	 *        Papadimitriou's original rule: a fair coin flip.
+	 */
+	class RandomPick implements TwoSAT_PickStrategy {
+		@Override
+		public boolean usesBreakCounts() {
+			return false;
+		}
+
+		@Override
+		public int pick(TwoSAT_PackedWalk walk, int lit1, int lit2) {
+			return (walk.nextLong() & 1) == 0 ? lit1 : lit2;
+		}
+
+		@Override
+		public String toString() {
+			return "Random (Papadimitriou)";
+		}
+	}
+	//end class RandomPick
+
+	/**
+	 * Class: WalkSAT
+	 *        WalkSAT/SKC pick rule with a noise parameter.
+	 */
+	class WalkSAT implements TwoSAT_PickStrategy {
+		private long noiseThreshold;	//noise, scaled to the range of a non-negative long
+
+		/**
+		 * 1-arg constructor
+		 * @param noise probability (0 to 1) of a random pick when there is no freebie
+		 */
+		public WalkSAT(double noise) {
+			this.noiseThreshold = (long) (noise * Long.MAX_VALUE);
+		}
+
+		@Override
+		public boolean usesBreakCounts() {
+			return true;
+		}
+
+		@Override
+		public int pick(TwoSAT_PackedWalk walk, int lit1, int lit2) {
+			int b1 = walk.getBreakCount(lit1 >>> 1), b2 = walk.getBreakCount(lit2 >>> 1);
+			if (b1 == 0 || b2 == 0) {
+				if (b1 != b2) return b1 == 0 ? lit1 : lit2;	//the one freebie
+			}
+			else if ((walk.nextLong() >>> 1) < this.noiseThreshold) {
+				return (walk.nextLong() & 1) == 0 ? lit1 : lit2;	//noise: random walk step
+			}
+			if (b1 != b2) return b1 < b2 ? lit1 : lit2;	//greedy step
+			return (walk.nextLong() & 1) == 0 ? lit1 : lit2;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("WalkSAT (noise %.2f)", this.noiseThreshold / (double) Long.MAX_VALUE);
+		}
+	}
+	//end class WalkSAT
+
+	/**
+	 * Class: ProbSAT
+	 *        ProbSAT pick rule with the polynomial break-based distribution f(b) = (eps + b)^-cb.
+	 */
+	class ProbSAT implements TwoSAT_PickStrategy {
+		private static final int TABLE_SIZE = 64;	//f(b) is precomputed for break counts below this
+
+		private double eps, cb;
+		private double[] table;
+
+		/**
+		 * 2-arg constructor
+		 * @param eps
+		 * @param cb
+		 */
+		public ProbSAT(double eps, double cb) {
+			this.eps = eps;
+			this.cb = cb;
+			this.table = new double[TABLE_SIZE];
+			for (int b = 0; b < TABLE_SIZE; b++) this.table[b] = Math.pow(eps + b, -cb);
+		}
+
+		/**
+		 * Method: weight
+		 * @param b break count
+		 * @return f(b)
+		 */
+		private double weight(int b) {
+			return b < TABLE_SIZE ? this.table[b] : Math.pow(this.eps + b, -this.cb);
+		}
+
+		@Override
+		public boolean usesBreakCounts() {
+			return true;
+		}
+
+		@Override
+		public int pick(TwoSAT_PackedWalk walk, int lit1, int lit2) {
+			double w1 = weight(walk.getBreakCount(lit1 >>> 1)), w2 = weight(walk.getBreakCount(lit2 >>> 1));
+			double r = (walk.nextLong() >>> 11) * 0x1.0p-53 * (w1 + w2);	//uniform in [0, w1 + w2)
+			return r < w1 ? lit1 : lit2;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("ProbSAT (eps %.2f, cb %.2f)", this.eps, this.cb);
+		}
+	}
+	//end class ProbSAT
+}
@@ -0,0 +1,320 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/** Class: TwoSAT_ReachabilityIndex.java
+ *
+ *  This class - answers "does literal a imply literal b under this formula?" without a fresh graph traversal.
+ *
+ *  For a satisfiable 2-SAT formula F, F implies (a -> b) iff, in the implication graph, a reaches b, or a reaches ~a
+ *  (a can never be TRUE), or ~b reaches b (b is always TRUE). Reachability between literals is reachability between
+ *  their SCCs in the condensation DAG (see TwoSAT_ImplicationGraph.java), which this class indexes once up front:
+ *
+ *  1) Small DAGs (up to CLOSURE_LIMIT SCCs) get a full transitive closure: one bitset row per SCC. A query is one
+ *     bit test.
+ *  2) Bigger DAGs get interval labels (as in GRAIL): a few randomized DFS traversals, each giving every SCC an interval
+ *     [low, post] such that if X reaches Y, then Y's interval lies inside X's in every traversal. Most negative queries
+ *     are answered by these labels plus the topological order (edges always go from a bigger SCC no. to a smaller one).
+ *     The remaining queries fall back to a DFS that is pruned by the same labels.
+ *
+ *  The index is read-only after construction, so any number of threads can query it at once. The fallback DFS uses
+ *  per-thread scratch buffers.
+ */
+public class TwoSAT_ReachabilityIndex {
+
+	static final int CLOSURE_LIMIT = 1 << 14;	//up to this many SCCs, the transitive closure takes at most 32 MB
+	private static final int NUM_OF_LABELINGS = 3;	//no. of randomized interval labelings for big DAGs
+
+	private TwoSAT_ImplicationGraph graph;
+	private boolean satisfiable;
+	private long[] closure;		//row X holds bit Y iff SCC X reaches SCC Y (small DAGs only)
+	private int rowWords;		//no. of longs per closure row
+	private int[] low, post;	//interval labels: SCC X has interval [low[i * C + X], post[i * C + X]] in labeling i
+	private long buildTimeNanos;
+
+	/* Per-thread scratch for the fallback DFS: a visited stamp per SCC and an explicit stack. */
+	private final ThreadLocal<int[][]> scratch = new ThreadLocal<int[][]>() {
+		@Override
+		protected int[][] initialValue() {
+			return new int[][] {new int[graph.numOfComps], new int[graph.numOfComps], new int[1]};
+		}
+	};
+
+	/**
+	 * 1-arg constructor. Builds the index.
+	 * @param graph
+	 */
+	public TwoSAT_ReachabilityIndex(TwoSAT_ImplicationGraph graph) {
+		long startTime = System.nanoTime();
+		this.graph = graph;
+		this.satisfiable = graph.isSatisfiable();
+		if (graph.numOfComps <= CLOSURE_LIMIT) buildClosure();
+		else buildIntervals();
+		this.buildTimeNanos = System.nanoTime() - startTime;
+	}
+
+	/**
+	 * Method: buildClosure
+	 *         Transitive closure as bitset rows. SCC numbers are a reverse topological order, so by the time row X is
+	 *         built, the rows of all its successors (which have smaller numbers) are complete.
+	 */
+	private void buildClosure() {
+		int c = this.graph.numOfComps;
+		this.rowWords = (c + 63) >>> 6;
+		this.closure = new long[c * this.rowWords];
+		for (int x = 0; x < c; x++) {
+			int row = x * this.rowWords;
+			this.closure[row + (x >>> 6)] |= 1L << x;
+			for (int e = this.graph.dagStart[x]; e < this.graph.dagStart[x + 1]; e++) {
+				int succ = this.graph.dagTo[e] * this.rowWords;
+				for (int w = 0; w < this.rowWords; w++) this.closure[row + w] |= this.closure[succ + w];
+			}
+		}
+	}
+
+	/**
+	 * Method: buildIntervals
+	 *         NUM_OF_LABELINGS iterative DFS traversals of the DAG, each visiting children in a random order.
+	 */
+	private void buildIntervals() {
+		int c = this.graph.numOfComps;
+		this.low = new int[NUM_OF_LABELINGS * c];
+		this.post = new int[NUM_OF_LABELINGS * c];
+		int[] stackNode = new int[c];
+		int[] stackStep = new int[c];	//how many children of the node have been pushed so far
+		int[] stackStart = new int[c];	//random child to start with
+		boolean[] visited = new boolean[c];
+		Random rnd = new Random(c);
+
+		for (int i = 0; i < NUM_OF_LABELINGS; i++) {
+			int base = i * c;
+			Arrays.fill(visited, false);
+			int counter = 0;
+
+			/* Start from every SCC in topological order (biggest no. first), so sources come first. */
+			for (int root = c - 1; root >= 0; root--) {
+				if (visited[root]) continue;
+				int sp = 0;
+				visited[root] = true;
+				stackNode[sp] = root;
+				stackStep[sp] = 0;
+				stackStart[sp] = rnd.nextInt(Math.max(1, this.graph.dagStart[root + 1] - this.graph.dagStart[root]));
+				this.low[base + root] = Integer.MAX_VALUE;
+				sp++;
+
+				while (sp > 0) {
+					int x = stackNode[sp - 1];
+					int deg = this.graph.dagStart[x + 1] - this.graph.dagStart[x];
+					if (stackStep[sp - 1] < deg) {
+						int y = this.graph.dagTo[this.graph.dagStart[x] + (stackStart[sp - 1] + stackStep[sp - 1]++) % deg];
+						if (!visited[y]) {
+							visited[y] = true;
+							stackNode[sp] = y;
+							stackStep[sp] = 0;
+							int degY = this.graph.dagStart[y + 1] - this.graph.dagStart[y];
+							stackStart[sp] = degY == 0 ? 0 : rnd.nextInt(degY);
+							this.low[base + y] = Integer.MAX_VALUE;
+							sp++;
+						}
+						else {
+							this.low[base + x] = Math.min(this.low[base + x], this.low[base + y]);
+						}
+					}
+					else {
+						/* All children done: x gets the next post-order rank. */
+						this.post[base + x] = counter++;
+						this.low[base + x] = Math.min(this.low[base + x], this.post[base + x]);
+						sp--;
+						if (sp > 0) {
+							int parent = stackNode[sp - 1];
+							this.low[base + parent] = Math.min(this.low[base + parent], this.low[base + x]);
+						}
+					}
+				}
+				//end while
+			}
+			//end for (root)
+		}
+		//end for (labelings)
+	}
+
+	/**
+	 * Method: implies
+	 * @param a signed literal, e.g. -16808
+	 * @param b signed literal
+	 * @return true if every satisfying assignment that makes a TRUE also makes b TRUE
+	 *         (always true for an unsatisfiable formula). A variable that does not occur in the formula is
+	 *         unconstrained, so it implies (and is implied by) only what the formula forces anyway.
+	 * @throws IllegalArgumentException if a or b is 0
+	 */
+	public boolean implies(int a, int b) {
+		if (a == 0 || b == 0) throw new IllegalArgumentException("0 is not a literal");
+		if (!this.satisfiable || a == b) return true;
+		if (isForcedFalse(a) || isForcedFalse(-b)) return true;
+		if (!occurs(a) || !occurs(b)) return false;	//an unconstrained variable is not tied to anything
+		return reaches(this.graph.comp[TwoSAT_ClauseStore.code(a)], this.graph.comp[TwoSAT_ClauseStore.code(b)]);
+	}
+
+	/**
+	 * Method: isForcedFalse
+	 * @param a signed literal
+	 * @return true if a reaches ~a, i.e. no satisfying assignment makes a TRUE. Always false if a does not occur.
+	 */
+	private boolean isForcedFalse(int a) {
+		if (!occurs(a)) return false;
+		int x = TwoSAT_ClauseStore.code(a);
+		return reaches(this.graph.comp[x], this.graph.comp[x ^ 1]);
+	}
+
+	/**
+	 * Method: occurs
+	 * @param a signed literal
+	 * @return true if the variable of a is a node of the implication graph
+	 */
+	private boolean occurs(int a) {
+		return Math.abs((long) a) <= this.graph.maxVar;
+	}
+
+	/**
+	 * Method: reaches
+	 * @param u SCC no.
+	 * @param v SCC no.
+	 * @return true if SCC u reaches SCC v in the condensation DAG
+	 */
+	boolean reaches(int u, int v) {
+		if (u == v) return true;
+		if (v > u) return false;	//edges always go from a bigger SCC no. to a smaller one
+		if (this.closure != null) return (this.closure[u * this.rowWords + (v >>> 6)] & (1L << v)) != 0;
+		if (!mayReach(u, v)) return false;
+
+		/* Fallback: DFS from u, pruned by topological order and the interval labels. */
+		int[][] s = this.scratch.get();
+		int[] stamp = s[0];
+		int[] stack = s[1];
+		int query = ++s[2][0];
+		if (query == 0) {	//stamp counter wrapped around: start over
+			Arrays.fill(stamp, 0);
+			query = s[2][0] = 1;
+		}
+		int sp = 0;
+		stack[sp++] = u;
+		stamp[u] = query;
+		while (sp > 0) {
+			int x = stack[--sp];
+			for (int e = this.graph.dagStart[x]; e < this.graph.dagStart[x + 1]; e++) {
+				int y = this.graph.dagTo[e];
+				if (y == v) return true;
+				if (stamp[y] == query || y < v || !mayReach(y, v)) continue;
+				stamp[y] = query;
+				stack[sp++] = y;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Method: mayReach
+	 * @return false if the interval labels prove that SCC u cannot reach SCC v
+	 */
+	private boolean mayReach(int u, int v) {
+		int c = this.graph.numOfComps;
+		for (int i = 0, base = 0; i < NUM_OF_LABELINGS; i++, base += c) {
+			if (this.low[base + v] < this.low[base + u] || this.post[base + v] > this.post[base + u]) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Method: impliesAll
+	 *         Bulk queries, answered in parallel on the common ForkJoinPool.
+	 * @param as
+	 * @param bs
+	 * @return result[i] = implies(as[i], bs[i])
+	 */
+	public boolean[] impliesAll(final int[] as, final int[] bs) {
+		final boolean[] result = new boolean[as.length];
+		int sliceSize = Math.max(1024, as.length / (4 * ForkJoinPool.commonPool().getParallelism()));
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int from = 0; from < as.length; from += sliceSize) {
+			final int qFrom = from, qTo = Math.min(as.length, from + sliceSize);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (int q = qFrom; q < qTo; q++) result[q] = implies(as[q], bs[q]);
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Void> f : ForkJoinPool.commonPool().invokeAll(tasks)) f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+		return result;
+	}
+
+	/**
+	 * Method: getIndexBytes
+	 * @return the size of the index itself (not counting the graph), in bytes
+	 */
+	public long getIndexBytes() {
+		if (this.closure != null) return 8L * this.closure.length;
+		return 4L * (this.low.length + this.post.length);
+	}
+
+	/**
+	 * Method: getBuildTimeNanos
+	 * @return how long it took to build the index
+	 */
+	public long getBuildTimeNanos() {
+		return this.buildTimeNanos;
+	}
+
+	/**
+	 * Method: toString
+	 * @return the kind of index, its size and its build time
+	 */
+	@Override
+	public String toString() {
+		return String.format("%s index over %s SCCs: %.1f KB, built in %.3f ms",
+				this.closure != null ? "Transitive closure" : "Interval label", this.graph.numOfComps,
+				getIndexBytes() / 1024.0, this.buildTimeNanos / 1e6);
+	}
+
+	/**
+	 * Method: main
+	 *         Builds the index for each given data file and measures the query throughput on random literal pairs.
+	 * @param args
+	 */
+	public static void main(String[] args) throws IOException {
+		for (String s : args) {
+			System.out.printf("==========================================================\n%s\n", s);
+			TwoSAT_ImplicationGraph graph = new TwoSAT_ImplicationGraph(TwoSAT_ClauseList.load(s));
+			TwoSAT_ReachabilityIndex index = new TwoSAT_ReachabilityIndex(graph);
+			System.out.println(index);
+
+			Random rnd = new Random(1);
+			int numOfQueries = 1000000;
+			int[] as = new int[numOfQueries], bs = new int[numOfQueries];
+			for (int q = 0; q < numOfQueries; q++) {
+				as[q] = (1 + rnd.nextInt(graph.maxVar)) * (rnd.nextBoolean() ? 1 : -1);
+				bs[q] = (1 + rnd.nextInt(graph.maxVar)) * (rnd.nextBoolean() ? 1 : -1);
+			}
+			long startTime = System.nanoTime();
+			boolean[] result = index.impliesAll(as, bs);
+			double elapsed = (System.nanoTime() - startTime) / 1e9;
+			int numOfTrue = 0;
+			for (boolean r : result) if (r) numOfTrue++;
+			System.out.printf("%s queries (%s true) in %.3f s: %.0f queries/s\n", numOfQueries, numOfTrue, elapsed, numOfQueries / elapsed);
+		}
+	}
+}
@@ -0,0 +1,230 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/** Class: TwoSAT_Renumbering.java
+ *
+ *  This class - renumbers the variables (and reorders the clauses) of a formula for memory locality.
+ *
+ *  Variable labels in the data files are arbitrary IDs: clause "-16808 75250" links two labels that are far apart, so
+ *  every array indexed by variable or literal (graph nodes, SCC numbers, assignment bits, occurrence lists) is visited
+ *  in a random order by both the SCC search and the random walk. This class computes a reverse Cuthill-McKee (RCM)
+ *  order of the variable-interaction graph (two variables are adjacent if they share a clause, i.e. if their literals
+ *  are linked in the implication graph):
+ *
+ *  1) Every connected component is traversed breadth-first, starting from a variable of minimum degree, and the
+ *     neighbors of each variable are visited in order of increasing degree.
+ *  2) The resulting order is reversed, and variable i of that order gets the new label i (1-based).
+ *  3) Clauses are sorted (stably) by the smaller new label of their two variables.
+ *
+ *  Both literals of a variable keep the same new label, so the implication graph keeps its structure (the complement
+ *  of literal code x is still x ^ 1) and only the labels change. Variables that do not occur get the highest labels.
+ *  Models found in the new numbering are mapped back to the original labels with toOriginal().
+ *
+ *  Used by TwoSAT_SCC.solveRenumbered() (SCC reduction) and TwoSAT_Papadimitriou.papadimitriouRenumbered() (walk).
+ */
+public class TwoSAT_Renumbering {
+
+	int maxVar;			//the biggest variable label (same in both numberings)
+	int numOfClauses;
+	int[] literals;		//the renumbered clauses: two signed literals per clause, sorted by their smaller variable
+	private int[] newLabel;		//new label of each original variable
+	private int[] oldLabel;		//original label of each new variable
+
+	/**
+	 * 2-arg constructor. Computes the new numbering.
+	 * @param signedLiterals two signed literals per clause (same format as TwoSAT_ClauseList.literals)
+	 * @param numOfClauses
+	 */
+	public TwoSAT_Renumbering(int[] signedLiterals, int numOfClauses) {
+		this.numOfClauses = numOfClauses;
+		this.maxVar = 0;
+		for (int i = 0; i < 2 * numOfClauses; i++) this.maxVar = Math.max(this.maxVar, Math.abs(TwoSAT_ClauseStore.checkRange(signedLiterals[i])));
+		computeOrder(signedLiterals);
+		renumberClauses(signedLiterals);
+	}
+
+	/**
+	 * 1-arg constructor
+	 * @param clauses
+	 */
+	public TwoSAT_Renumbering(TwoSAT_ClauseList clauses) {
+		this(clauses.literals, clauses.numOfClauses);
+	}
+
+	/**
+	 * Method: computeOrder
+	 *         Builds the variable-interaction graph (CSR) and runs reverse Cuthill-McKee on it.
+	 * @param signedLiterals
+	 */
+	private void computeOrder(int[] signedLiterals) {
+		int n = this.maxVar;
+		int m = this.numOfClauses;
+
+		/* Undirected adjacency lists, one entry per clause end (self-loops from clauses like "x OR ~x" are left out). */
+		int[] adjStart = new int[n + 2];
+		for (int c = 0; c < m; c++) {
+			int a = Math.abs(signedLiterals[2 * c]), b = Math.abs(signedLiterals[2 * c + 1]);
+			if (a == b) continue;
+			adjStart[a + 1]++;
+			adjStart[b + 1]++;
+		}
+		for (int v = 0; v <= n; v++) adjStart[v + 1] += adjStart[v];
+		int[] adj = new int[adjStart[n + 1]];
+		int[] next = Arrays.copyOf(adjStart, n + 1);
+		for (int c = 0; c < m; c++) {
+			int a = Math.abs(signedLiterals[2 * c]), b = Math.abs(signedLiterals[2 * c + 1]);
+			if (a == b) continue;
+			adj[next[a]++] = b;
+			adj[next[b]++] = a;
+		}
+
+		/* Candidate start variables, by increasing degree (counting sort). */
+		boolean[] occurs = new boolean[n + 1];
+		for (int i = 0; i < 2 * m; i++) occurs[Math.abs(signedLiterals[i])] = true;
+		int maxDegree = 0;
+		for (int v = 1; v <= n; v++) maxDegree = Math.max(maxDegree, adjStart[v + 1] - adjStart[v]);
+		int[] byDegreeStart = new int[maxDegree + 2];
+		for (int v = 1; v <= n; v++) byDegreeStart[adjStart[v + 1] - adjStart[v] + 1]++;
+		for (int d = 0; d <= maxDegree; d++) byDegreeStart[d + 1] += byDegreeStart[d];
+		int[] byDegree = new int[n];
+		for (int v = 1; v <= n; v++) byDegree[byDegreeStart[adjStart[v + 1] - adjStart[v]]++] = v;
+
+		/* Cuthill-McKee: BFS per component; order[] doubles as the BFS queue. */
+		int[] order = new int[n];
+		int size = 0;
+		boolean[] visited = new boolean[n + 1];
+		long[] batch = new long[maxDegree];		//unvisited neighbors of the current variable, as (degree << 32 | variable)
+		for (int s : byDegree) {
+			if (visited[s] || !occurs[s]) continue;
+			visited[s] = true;
+			order[size++] = s;
+			for (int head = size - 1; head < size; head++) {
+				int v = order[head];
+				int count = 0;
+				for (int k = adjStart[v]; k < adjStart[v + 1]; k++) {
+					int w = adj[k];
+					if (visited[w]) continue;
+					visited[w] = true;
+					batch[count++] = ((long) (adjStart[w + 1] - adjStart[w]) << 32) | w;
+				}
+				Arrays.sort(batch, 0, count);
+				for (int i = 0; i < count; i++) order[size++] = (int) batch[i];
+			}
+		}
+		int numOfActive = size;
+
+		/* Reverse the order, then append the variables that do not occur. */
+		this.newLabel = new int[n + 1];
+		this.oldLabel = new int[n + 1];
+		for (int i = 0; i < numOfActive; i++) {
+			int v = order[numOfActive - 1 - i];
+			this.newLabel[v] = i + 1;
+			this.oldLabel[i + 1] = v;
+		}
+		int label = numOfActive;
+		for (int v = 1; v <= n; v++) {
+			if (!occurs[v]) {
+				this.newLabel[v] = ++label;
+				this.oldLabel[label] = v;
+			}
+		}
+	}
+
+	/**
+	 * Method: renumberClauses
+	 *         Relabels every clause and sorts the clauses by their smaller new variable (counting sort, so stable).
+	 * @param signedLiterals
+	 */
+	private void renumberClauses(int[] signedLiterals) {
+		int m = this.numOfClauses;
+		int[] start = new int[this.maxVar + 2];
+		for (int c = 0; c < m; c++) {
+			start[Math.min(this.newLabel[Math.abs(signedLiterals[2 * c])], this.newLabel[Math.abs(signedLiterals[2 * c + 1])]) + 1]++;
+		}
+		for (int v = 0; v <= this.maxVar; v++) start[v + 1] += start[v];
+		this.literals = new int[2 * m];
+		for (int c = 0; c < m; c++) {
+			int a = toNew(signedLiterals[2 * c]), b = toNew(signedLiterals[2 * c + 1]);
+			int i = 2 * start[Math.min(Math.abs(a), Math.abs(b))]++;
+			this.literals[i] = a;
+			this.literals[i + 1] = b;
+		}
+	}
+
+	/**
+	 * Method: toNew
+	 * @param signedLiteral literal in the original numbering, e.g. -16808
+	 * @return the same literal in the new numbering
+	 */
+	public int toNew(int signedLiteral) {
+		return signedLiteral < 0 ? -this.newLabel[-signedLiteral] : this.newLabel[signedLiteral];
+	}
+
+	/**
+	 * Method: toOld
+	 * @param signedLiteral literal in the new numbering
+	 * @return the same literal in the original numbering
+	 */
+	public int toOld(int signedLiteral) {
+		return signedLiteral < 0 ? -this.oldLabel[-signedLiteral] : this.oldLabel[signedLiteral];
+	}
+
+	/**
+	 * Method: toOriginal
+	 * @param model assignment bitset in the new numbering. May be shorter than maxVar bits, since solvers only size
+	 *              it for the variables that occur (variables past its end are FALSE).
+	 * @return the same assignment as a bitset in the original numbering
+	 */
+	public long[] toOriginal(long[] model) {
+		long[] original = new long[(this.maxVar >>> 6) + 1];
+		for (int v = 1, end = Math.min(this.maxVar, (model.length << 6) - 1); v <= end; v++) {
+			if (TwoSAT_ClauseStore.getValue(model, v)) TwoSAT_ClauseStore.flip(original, this.oldLabel[v]);
+		}
+		return original;
+	}
+
+	/**
+	 * Method: bandwidth
+	 * @param signedLiterals
+	 * @param numOfClauses
+	 * @return the average distance between the two variable labels of a clause (lower means better locality)
+	 */
+	static double bandwidth(int[] signedLiterals, int numOfClauses) {
+		long sum = 0;
+		for (int c = 0; c < numOfClauses; c++) sum += Math.abs(Math.abs(signedLiterals[2 * c]) - Math.abs(signedLiterals[2 * c + 1]));
+		return numOfClauses == 0 ? 0 : (double) sum / numOfClauses;
+	}
+
+	/**
+	 * Method: main
+	 *         Solves each data file with the primitive SCC reduction (and, if satisfiable, the packed random walk),
+	 *         both in the new numbering, and checks the models (mapped back to the original labels) against the
+	 *         original clauses.
+	 * @param args
+	 */
+	public static void main(String[] args) throws IOException {
+		for (String s : args) {
+			System.out.printf("==========================================================\nRunning %s...\n", s);
+			TwoSAT_ClauseList clauses = TwoSAT_ClauseList.load(s);
+			long startTime = System.nanoTime();
+			TwoSAT_Renumbering renumbering = new TwoSAT_Renumbering(clauses);
+			System.out.printf("Renumbered in %.1f ms. Average label distance per clause: %.1f before, %.1f after\n",
+					(System.nanoTime() - startTime) / 1e6, bandwidth(clauses.literals, clauses.numOfClauses),
+					bandwidth(renumbering.literals, renumbering.numOfClauses));
+
+			TwoSAT_BulkEvaluator original = new TwoSAT_BulkEvaluator(new TwoSAT_ClauseStore(clauses));
+			TwoSAT_ImplicationGraph graph = new TwoSAT_ImplicationGraph(renumbering.literals, renumbering.numOfClauses);
+			boolean satisfiable = graph.isSatisfiable();
+			System.out.printf("SCC: Satisfiable? %s", satisfiable);
+			System.out.printf(satisfiable ? " (model valid? %s)\n" : "\n", original.isModel(renumbering.toOriginal(graph.getModel())));
+
+			/* The walk cannot prove unsatisfiability (it would just use up its whole budget), so only run it on
+			 * satisfiable formulas. */
+			if (!satisfiable) continue;
+			TwoSAT_PackedWalk walk = new TwoSAT_PackedWalk(new TwoSAT_ClauseStore(renumbering.literals, renumbering.numOfClauses), System.nanoTime());
+			satisfiable = walk.run();
+			System.out.printf("Random walk: Satisfiable? %s", satisfiable);
+			System.out.printf(satisfiable ? " (model valid? %s)\n" : "\n", original.isModel(renumbering.toOriginal(walk.getModel())));
+		}
+	}
+}
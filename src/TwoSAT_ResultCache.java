@@ -0,0 +1,396 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Class: TwoSAT_ResultCache.java
+ *
+ *  This class - caches verdicts (and models) of formulas in front of the SCC reduction and the random walk.
+ *
+ *  The cache key is a fingerprint of the formula's clause SET: every clause is run through TwoSAT_ClauseNormalizer
+ *  (so tautologies and duplicates, mirrored or not, drop out) and the canonical keys of the surviving clauses are
+ *  hashed with two different mixing functions and summed up. Sums do not depend on the order of the clauses, so the
+ *  same formula with its clauses reordered, mirrored or repeated gets the same fingerprint: two 64-bit sums plus
+ *  the no. of distinct clauses.
+ *
+ *  Entries are evicted in least-recently-used order once their total (estimated) size exceeds the given bound.
+ *  Satisfiable entries can carry a model. Before a cached model is handed out, it is checked against the clauses of
+ *  the formula at hand with TwoSAT_BulkEvaluator (linear time); if the check fails (e.g. a fingerprint collision),
+ *  the entry is dropped and the lookup counts as a miss. Unsatisfiable verdicts have no such certificate and are
+ *  trusted as is. For the same reason, a "probably unsatisfiable" result of the random walk is never cached.
+ *
+ *  The cache can be saved to and loaded from a local file. All public methods are thread-safe.
+ */
+public class TwoSAT_ResultCache {
+
+	private static final int FILE_MAGIC = 0x32534143;	//"2SAC"
+	private static final int FILE_VERSION = 1;
+	private static final int ENTRY_OVERHEAD = 96;		//estimated bytes per entry besides the model (key, entry, map node)
+
+	private long maxBytes;			//size bound for all entries together
+	private boolean storeModels;	//whether satisfiable entries keep a model
+	private long bytes;				//current (estimated) size of all entries
+	private long hits, misses, evictions, rejectedModels;
+	private LinkedHashMap<Key, Entry> map = new LinkedHashMap<>(16, 0.75f, true);	//access order: eldest = least recently used
+
+	/**
+	 * Class: Key
+	 *        Order-independent fingerprint of a clause set.
+	 */
+	static final class Key {
+		final long sum1, sum2;		//sums of two different hashes of the canonical clause keys
+		final int numOfClauses;		//no. of distinct, non-tautological clauses
+
+		/**
+		 * 3-arg constructor
+		 * @param sum1
+		 * @param sum2
+		 * @param numOfClauses
+		 */
+		Key(long sum1, long sum2, int numOfClauses) {
+			this.sum1 = sum1;
+			this.sum2 = sum2;
+			this.numOfClauses = numOfClauses;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) return false;
+			Key k = (Key) o;
+			return this.sum1 == k.sum1 && this.sum2 == k.sum2 && this.numOfClauses == k.numOfClauses;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (this.sum1 ^ (this.sum1 >>> 32)) * 31 + this.numOfClauses;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%016x%016x/%s", this.sum1, this.sum2, this.numOfClauses);
+		}
+	}
+	//end static final class Key
+
+	/**
+	 * Class: Entry
+	 *        A cached verdict.
+	 */
+	static final class Entry {
+		final boolean satisfiable;
+		final long[] model;		//assignment bitset, indexed by variable. Null if there is none.
+
+		/**
+		 * 2-arg constructor
+		 * @param satisfiable
+		 * @param model
+		 */
+		Entry(boolean satisfiable, long[] model) {
+			this.satisfiable = satisfiable;
+			this.model = model;
+		}
+
+		/**
+		 * Method: size
+		 * @return estimated memory footprint, in bytes
+		 */
+		long size() {
+			return ENTRY_OVERHEAD + (this.model == null ? 0 : 16 + 8L * this.model.length);
+		}
+	}
+	//end static final class Entry
+
+	/**
+	 * 2-arg constructor
+	 * @param maxBytes size bound for all entries together, in bytes
+	 * @param storeModels whether to keep a model with every satisfiable entry (so that hits can be verified)
+	 */
+	public TwoSAT_ResultCache(long maxBytes, boolean storeModels) {
+		this.maxBytes = maxBytes;
+		this.storeModels = storeModels;
+	}
+
+	/**
+	 * Method: fingerprint
+	 * @param clauses
+	 * @return the order-independent fingerprint of the normalized clause set
+	 */
+	static Key fingerprint(TwoSAT_ClauseList clauses) {
+		TwoSAT_ClauseNormalizer normalizer = new TwoSAT_ClauseNormalizer(clauses.numOfClauses);
+		long sum1 = 0, sum2 = 0;
+		int count = 0;
+		for (int i = 0; i < clauses.numOfClauses; i++) {
+			int lit1 = clauses.literals[2 * i], lit2 = clauses.literals[2 * i + 1];
+			if (!normalizer.admit(lit1, lit2)) continue;
+			long key = TwoSAT_ClauseNormalizer.key(lit1, lit2);
+			sum1 += mix(key ^ 0x9E3779B97F4A7C15L, 0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L);
+			sum2 += mix(key ^ 0xD6E8FEB86659FD93L, 0xBF58476D1CE4E5B9L, 0x94D049BB133111EBL);
+			count++;
+		}
+		return new Key(sum1, sum2, count);
+	}
+
+	/**
+	 * Method: mix
+	 *         64-bit finalizer (xor-shift-multiply), with the given multipliers.
+	 * @param z
+	 * @param m1
+	 * @param m2
+	 * @return the mixed value
+	 */
+	private static long mix(long z, long m1, long m2) {
+		z = (z ^ (z >>> 33)) * m1;
+		z = (z ^ (z >>> 33)) * m2;
+		return z ^ (z >>> 33);
+	}
+
+	/**
+	 * Method: lookup
+	 *         The cached model is verified outside the lock, so a large hit does not hold up other threads.
+	 * @param clauses
+	 * @param key fingerprint of the clauses
+	 * @return the cached verdict, or null on a miss. A cached model has already been verified against the clauses.
+	 */
+	Entry lookup(TwoSAT_ClauseList clauses, Key key) {
+		Entry entry;
+		synchronized (this) {
+			entry = this.map.get(key);
+		}
+		boolean rejected = entry != null && entry.model != null && !isModel(clauses, entry.model);
+		synchronized (this) {
+			if (rejected) {
+				this.rejectedModels++;
+				if (this.map.remove(key, entry)) this.bytes -= entry.size();	//unless another thread replaced it meanwhile
+				entry = null;
+			}
+			if (entry == null) this.misses++;
+			else this.hits++;
+		}
+		return entry;
+	}
+
+	/**
+	 * Method: isModel
+	 * @param clauses
+	 * @param model
+	 * @return true if the model satisfies every clause (linear time)
+	 */
+	private static boolean isModel(TwoSAT_ClauseList clauses, long[] model) {
+		TwoSAT_ClauseStore store = new TwoSAT_ClauseStore(clauses);
+		long[] bits = store.newAssignment();
+		System.arraycopy(model, 0, bits, 0, Math.min(model.length, bits.length));	//variables past the model's end are FALSE
+		return new TwoSAT_BulkEvaluator(store).isModel(bits);
+	}
+
+	/**
+	 * Method: store
+	 *         Adds (or replaces) an entry, then evicts least recently used entries until the size bound holds again.
+	 * @param key
+	 * @param satisfiable
+	 * @param model may be null. Ignored unless models are stored.
+	 */
+	synchronized void store(Key key, boolean satisfiable, long[] model) {
+		Entry entry = new Entry(satisfiable, this.storeModels && satisfiable ? model : null);
+		Entry old = this.map.put(key, entry);
+		if (old != null) this.bytes -= old.size();
+		this.bytes += entry.size();
+
+		Iterator<Map.Entry<Key, Entry>> it = this.map.entrySet().iterator();
+		while (this.bytes > this.maxBytes && it.hasNext()) {
+			Entry eldest = it.next().getValue();
+			it.remove();
+			this.bytes -= eldest.size();
+			this.evictions++;
+		}
+	}
+
+	/**
+	 * Method: solveWithSCC
+	 *         Cached front of the SCC reduction. A miss is solved with the primitive SCC reduction
+	 *         (TwoSAT_ImplicationGraph.java), which works on the clauses already loaded for the fingerprint and yields
+	 *         the verdict and the model in one linear-time pass.
+	 * @param fileName
+	 * @return true if the clauses in the data file are satisfiable, false otherwise.
+	 * @throws IOException
+	 */
+	public boolean solveWithSCC(String fileName) throws IOException {
+		return solveWithSCC(TwoSAT_ClauseList.load(fileName));
+	}
+
+	/**
+	 * Method: solveWithSCC
+	 * @param clauses
+	 * @return true if the clauses are satisfiable, false otherwise.
+	 */
+	public boolean solveWithSCC(TwoSAT_ClauseList clauses) {
+		Key key = fingerprint(clauses);
+		Entry entry = lookup(clauses, key);
+		if (entry != null) return entry.satisfiable;
+
+		TwoSAT_ImplicationGraph graph = new TwoSAT_ImplicationGraph(clauses);
+		boolean satisfiable = graph.isSatisfiable();
+		store(key, satisfiable, satisfiable ? graph.getModel() : null);
+		return satisfiable;
+	}
+
+	/**
+	 * Method: solveWithPapadimitriou
+	 *         Cached front of the random walk. A miss runs the packed walk (the same walk as
+	 *         TwoSAT_Papadimitriou.papadimitriouPacked()) on the clauses already loaded for the fingerprint, so the
+	 *         file is parsed only once and the model comes straight from the walk.
+	 * @param fileName
+	 * @return true if the clauses in the data file are satisfiable, false if they are probably unsatisfiable.
+	 * @throws IOException
+	 */
+	public boolean solveWithPapadimitriou(String fileName) throws IOException {
+		return solveWithPapadimitriou(TwoSAT_ClauseList.load(fileName));
+	}
+
+	/**
+	 * Method: solveWithPapadimitriou
+	 * @param clauses
+	 * @return true if the clauses are satisfiable, false if they are probably unsatisfiable.
+	 */
+	public boolean solveWithPapadimitriou(TwoSAT_ClauseList clauses) {
+		Key key = fingerprint(clauses);
+		Entry entry = lookup(clauses, key);
+		if (entry != null) return entry.satisfiable;
+
+		TwoSAT_PackedWalk walk = new TwoSAT_PackedWalk(new TwoSAT_ClauseStore(clauses), System.nanoTime());
+		boolean satisfiable = walk.run() && walk.isModel();
+		if (satisfiable) store(key, true, walk.getModel());	//"probably unsatisfiable" is not a verdict worth caching
+		return satisfiable;
+	}
+
+	/**
+	 * Method: save
+	 *         Writes all entries, least recently used first, to a temporary file that is then renamed over the given
+	 *         file. Format (big-endian): int magic, int version, int no. of entries, then per entry:
+	 *         long sum1, long sum2, int numOfClauses, boolean satisfiable, int no. of model words (-1 = no model),
+	 *         long[] model.
+	 * @param fileName
+	 * @throws IOException
+	 */
+	public synchronized void save(String fileName) throws IOException {
+		File tmp = new File(fileName + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+		try {
+			out.writeInt(FILE_MAGIC);
+			out.writeInt(FILE_VERSION);
+			out.writeInt(this.map.size());
+			for (Map.Entry<Key, Entry> e : this.map.entrySet()) {
+				out.writeLong(e.getKey().sum1);
+				out.writeLong(e.getKey().sum2);
+				out.writeInt(e.getKey().numOfClauses);
+				out.writeBoolean(e.getValue().satisfiable);
+				long[] model = e.getValue().model;
+				out.writeInt(model == null ? -1 : model.length);
+				if (model != null) for (long word : model) out.writeLong(word);
+			}
+		} finally {
+			out.close();
+		}
+		try {
+			Files.move(tmp.toPath(), new File(fileName).toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmp.toPath(), new File(fileName).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Method: load
+	 *         Adds all entries saved in the given file (in their saved recency order). Missing files are ignored.
+	 * @param fileName
+	 * @throws IOException if the file exists but is not a cache file
+	 */
+	public synchronized void load(String fileName) throws IOException {
+		if (!new File(fileName).exists()) return;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 1 << 16));
+		try {
+			if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) throw new IOException(fileName + " is not a result cache file");
+			int size = in.readInt();
+			for (int i = 0; i < size; i++) {
+				Key key = new Key(in.readLong(), in.readLong(), in.readInt());
+				boolean satisfiable = in.readBoolean();
+				int words = in.readInt();
+				long[] model = words < 0 ? null : new long[words];
+				for (int w = 0; w < words; w++) model[w] = in.readLong();
+				store(key, satisfiable, model);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Method: getHits
+	 * @return no. of lookups answered from the cache
+	 */
+	public synchronized long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * Method: getMisses
+	 * @return no. of lookups that had to be solved
+	 */
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * Method: getEvictions
+	 * @return no. of entries evicted to honor the size bound
+	 */
+	public synchronized long getEvictions() {
+		return this.evictions;
+	}
+
+	/**
+	 * Method: getRejectedModels
+	 * @return no. of cached models that failed verification (and were dropped)
+	 */
+	public synchronized long getRejectedModels() {
+		return this.rejectedModels;
+	}
+
+	/**
+	 * Method: toString
+	 * @return the metrics
+	 */
+	@Override
+	public synchronized String toString() {
+		return String.format("Result cache: %s entries (%.1f KB of %.1f KB), %s hits, %s misses, %s evictions, %s rejected models",
+				this.map.size(), this.bytes / 1024.0, this.maxBytes / 1024.0, this.hits, this.misses, this.evictions, this.rejectedModels);
+	}
+
+	/**
+	 * Method: main
+	 *         Usage: java TwoSAT_ResultCache cacheFile 2sat*.txt
+	 *         Solves every data file through the cache (twice, to show the hits) and saves the cache at the end.
+	 * @param args
+	 */
+	public static void main(String[] args) throws IOException {
+		TwoSAT_ResultCache cache = new TwoSAT_ResultCache(64L << 20, true);
+		cache.load(args[0]);
+		for (int round = 1; round <= 2; round++) {
+			for (int i = 1; i < args.length; i++) {
+				long startTime = System.currentTimeMillis();
+				boolean satisfiable = cache.solveWithSCC(args[i]);
+				System.out.printf("Round %s: %s satisfiable? %s (%s ms)\n", round, args[i], satisfiable, System.currentTimeMillis() - startTime);
+			}
+		}
+		System.out.println(cache);
+		cache.save(args[0]);
+	}
+}
@@ -63,6 +63,7 @@ public class TwoSAT_SCC {
 	private SCC scc;				//A global SCC object. Note SCC is an inner class in this file.
 	private int numOfVars;			//total number of variables
 	private int numOfClauses;		//total number of clauses
+	private TwoSAT_ClauseNormalizer normalizer;	//drops duplicate clauses and tautologies while building the graph
 	
 	//Below vars are not needed for this algorithm though may be useful in another context
 //	private Vertex s;	//leader nodes in 2nd pass of DFS-Loop.
@@ -100,105 +101,47 @@ public class TwoSAT_SCC {
 		this.vertices = new HashSet<Vertex>();	//Keep track of all the vertices in the graph
 
 		try {
-			BufferedReader rd = new BufferedReader(new FileReader(new File(fileName)));
-
-            //Read the first line, which contains info re: total no. of variables and total no. clauses
-            String line = rd.readLine();
-
-            StringTokenizer tokenizer = new StringTokenizer(line);
-            this.numOfVars = Integer.parseInt(tokenizer.nextToken());
-
-            /* Depending on the txt file, there may or may not be a 2nd entry in the first line. If there is,
-             * then it contains the total no. of clauses. If there isn't, then total no. of vars = total no. of clauses. */
-            if (tokenizer.hasMoreTokens()) this.numOfClauses = Integer.parseInt(tokenizer.nextToken());
-            else this.numOfClauses = this.numOfVars;
-
-            int index = 0;
-            while (++index <= this.numOfClauses) {
-            	line = rd.readLine();
-                tokenizer = new StringTokenizer(line);
-                int uLabel = Integer.parseInt(tokenizer.nextToken());
-                int vLabel = Integer.parseInt(tokenizer.nextToken());
-
-                int uLabelComplement = -uLabel;
-                int vLabelComplement = -vLabel;
-
-                /* Update the biggest vertex no. and the smallest vertex no. if appropriate. */
-				this.n = Math.max(this.n, Math.max(Math.abs(uLabel),  Math.abs(vLabel)));
-				this.m = Math.min(this.n, Math.min(Math.abs(uLabel) * -1,  Math.abs(vLabel) * -1));
-
-				/* If vertexMap (HashMap) doesn't yet contain a Vertex object with the corresponding label, create one. */
-				if(vertexMap.get(uLabel) == null) {
-					vertexMap.put(uLabel, new Vertex(uLabel));
-				}
-				Vertex u = vertexMap.get(uLabel);
-
-				/* Do the same for vLabel */
-				if(vertexMap.get(vLabel) == null) {
-					vertexMap.put(vLabel, new Vertex(vLabel));
+			/* Gzip-compressed files and huge txt files are loaded in memory by the multi-threaded loaders
+			 * (see TwoSAT_ClauseList.load()). Everything else is read line by line below. */
+			if (TwoSAT_ClauseList.isBulkLoad(fileName)) {
+				TwoSAT_ClauseList clauses = TwoSAT_ClauseList.load(fileName);
+				this.numOfVars = clauses.numOfVars;
+				this.numOfClauses = clauses.numOfClauses;
+				this.normalizer = new TwoSAT_ClauseNormalizer(this.numOfClauses);
+				for (int i = 0; i < this.numOfClauses; i++) {
+					addClause(clauses.literals[2 * i], clauses.literals[2 * i + 1]);
 				}
-				Vertex v = vertexMap.get(vLabel);
-
-				/* Do the same for the complements */
-				if(vertexMap.get(uLabelComplement) == null) {
-					vertexMap.put(uLabelComplement, new Vertex(uLabelComplement));
+			}
+			else {
+				BufferedReader rd = new BufferedReader(new FileReader(new File(fileName)));
+
+				//Read the first line, which contains info re: total no. of variables and total no. clauses
+				String line = rd.readLine();
+
+				StringTokenizer tokenizer = new StringTokenizer(line);
+				this.numOfVars = Integer.parseInt(tokenizer.nextToken());
+
+				/* Depending on the txt file, there may or may not be a 2nd entry in the first line. If there is,
+				 * then it contains the total no. of clauses. If there isn't, then total no. of vars = total no. of clauses. */
+				if (tokenizer.hasMoreTokens()) this.numOfClauses = Integer.parseInt(tokenizer.nextToken());
+				else this.numOfClauses = this.numOfVars;
+				this.normalizer = new TwoSAT_ClauseNormalizer(this.numOfClauses);
+
+				int index = 0;
+				while (++index <= this.numOfClauses) {
+					line = rd.readLine();
+					tokenizer = new StringTokenizer(line);
+					int uLabel = Integer.parseInt(tokenizer.nextToken());
+					int vLabel = Integer.parseInt(tokenizer.nextToken());
+					addClause(uLabel, vLabel);	//custom method
 				}
-				Vertex notU = vertexMap.get(uLabelComplement);
+				//end while
+				rd.close();
+			}
+			//end if/else
+			System.out.println(this.normalizer);
+			this.normalizer = null;	//no longer needed. Let the hash set be garbage collected.
 
-				if(vertexMap.get(vLabelComplement) == null) {
-					vertexMap.put(vLabelComplement, new Vertex(vLabelComplement));
-				}
-				Vertex notV = vertexMap.get(vLabelComplement);
-
-				/* Add all 4 vertices to the HashSet. This automatically takes care of any duplicates. */
-				this.vertices.add(u);
-				this.vertices.add(v);
-				this.vertices.add(notU);
-				this.vertices.add(notV);
-
-				/* ATTENTION:
-				 * A 2-SAT instance can be described using 2-CNF as follows:
-				 *
-				 * (x0 OR x1) AND (~x0 OR x2) AND (~x1 OR ~x2)
-				 *
-				 * The 2-SAT problem is to find a truth assignment to these variables that makes a formula of this
-				 * type true: we must choose whether to make each of the variables true or false, so that every
-				 * clause has at least one term that becomes true.
-				 *
-				 * Aspvall, Plass & Tarjan (1979) found a simple linear time procedure for solving 2-SAT instances,
-				 * based on the notion of strongly connected components. The algorithm is as follows:
-				 *
-				 * Create the inference graph G such that for each variable xi in the 2-SAT instance,
-				 * xi and ~xi are vertices of the inference graph. xi and ~xi are complements of each other.
-				 *
-				 * For each clause (u OR v), add the edges ~u -> v and ~v -> u to the inference graph G.
-				 *
-				 * (Why? Recall from discrete math that ~u -> v (if NOT u, THEN v) is translated to u OR v.
-				 * Same for ~v -> u, which is translated to v OR u.)
-				 *
-				 * Process each of the strongly connected components S of G as follows:
-				 * If x and ~x (i.e., a variable and its complement) belong to the same SCC,
-				 * then stop and return false, the instance is unsatisfiable.
-				 *
-				 * Otherwise, keep going for all other variables and complements for every SCC.
-				 * Once we explored every SCC in this way (and haven't returned false in the process),
-				 * we know it's satisfiable. Return true.
-				 *  */
-
-				Edge edge = new Edge(notU, v);	//This directed edge goes from notU to v.
-				this.edges.add(edge);
-
-				/* Update the vertices' data fields with the edge. */
-				notU.outgoingArrows.add(edge);
-				v.incomingArrows.add(edge);
-
-				Edge edge2 = new Edge(notV, u);	//This directed edge goes from notV to u.
-				this.edges.add(edge2);
-				notV.outgoingArrows.add(edge2);
-				u.incomingArrows.add(edge2);
-            }
-            //end while
-            rd.close();
             if (debugOn) {
             	System.out.println("All vertices in this graph and their directed arrows:");
 				for(Vertex v : this.vertices) {
@@ -216,6 +159,94 @@ public class TwoSAT_SCC {
 	}
 	//end private void build
 
+	/**
+	 * Method: addClause
+	 *         Adds the clause (uLabel OR vLabel) to the inference graph, unless the normalizer drops it.
+	 * @param uLabel first literal of the clause. Could be positive or negative.
+	 * @param vLabel second literal of the clause. Could be positive or negative.
+	 */
+	private void addClause(int uLabel, int vLabel) {
+		if (!this.normalizer.admit(uLabel, vLabel)) return;	//duplicate or tautology: it would only add redundant edges
+
+		int uLabelComplement = -uLabel;
+		int vLabelComplement = -vLabel;
+
+		/* Update the biggest vertex no. and the smallest vertex no. if appropriate. */
+		this.n = Math.max(this.n, Math.max(Math.abs(uLabel),  Math.abs(vLabel)));
+		this.m = Math.min(this.n, Math.min(Math.abs(uLabel) * -1,  Math.abs(vLabel) * -1));
+
+		/* If vertexMap (HashMap) doesn't yet contain a Vertex object with the corresponding label, create one. */
+		if(vertexMap.get(uLabel) == null) {
+			vertexMap.put(uLabel, new Vertex(uLabel));
+		}
+		Vertex u = vertexMap.get(uLabel);
+
+		/* Do the same for vLabel */
+		if(vertexMap.get(vLabel) == null) {
+			vertexMap.put(vLabel, new Vertex(vLabel));
+		}
+		Vertex v = vertexMap.get(vLabel);
+
+		/* Do the same for the complements */
+		if(vertexMap.get(uLabelComplement) == null) {
+			vertexMap.put(uLabelComplement, new Vertex(uLabelComplement));
+		}
+		Vertex notU = vertexMap.get(uLabelComplement);
+
+		if(vertexMap.get(vLabelComplement) == null) {
+			vertexMap.put(vLabelComplement, new Vertex(vLabelComplement));
+		}
+		Vertex notV = vertexMap.get(vLabelComplement);
+
+		/* Add all 4 vertices to the HashSet. This automatically takes care of any duplicates. */
+		this.vertices.add(u);
+		this.vertices.add(v);
+		this.vertices.add(notU);
+		this.vertices.add(notV);
+
+		/* ATTENTION:
+		 * A 2-SAT instance can be described using 2-CNF as follows:
+		 *
+		 * (x0 OR x1) AND (~x0 OR x2) AND (~x1 OR ~x2)
+		 *
+		 * The 2-SAT problem is to find a truth assignment to these variables that makes a formula of this
+		 * type true: we must choose whether to make each of the variables true or false, so that every
+		 * clause has at least one term that becomes true.
+		 *
+		 * Aspvall, Plass & Tarjan (1979) found a simple linear time procedure for solving 2-SAT instances,
+		 * based on the notion of strongly connected components. The algorithm is as follows:
+		 *
+		 * Create the inference graph G such that for each variable xi in the 2-SAT instance,
+		 * xi and ~xi are vertices of the inference graph. xi and ~xi are complements of each other.
+		 *
+		 * For each clause (u OR v), add the edges ~u -> v and ~v -> u to the inference graph G.
+		 *
+		 * (Why? Recall from discrete math that ~u -> v (if NOT u, THEN v) is translated to u OR v.
+		 * Same for ~v -> u, which is translated to v OR u.)
+		 *
+		 * Process each of the strongly connected components S of G as follows:
+		 * If x and ~x (i.e., a variable and its complement) belong to the same SCC,
+		 * then stop and return false, the instance is unsatisfiable.
+		 *
+		 * Otherwise, keep going for all other variables and complements for every SCC.
+		 * Once we explored every SCC in this way (and haven't returned false in the process),
+		 * we know it's satisfiable. Return true.
+		 *  */
+
+		Edge edge = new Edge(notU, v);	//This directed edge goes from notU to v.
+		this.edges.add(edge);
+
+		/* Update the vertices' data fields with the edge. */
+		notU.outgoingArrows.add(edge);
+		v.incomingArrows.add(edge);
+
+		Edge edge2 = new Edge(notV, u);	//This directed edge goes from notV to u.
+		this.edges.add(edge2);
+		notV.outgoingArrows.add(edge2);
+		u.incomingArrows.add(edge2);
+	}
+	//end private void addClause
+
 	/**
 	 * Method: Kosaraju
 	 * 
@@ -284,6 +315,58 @@ public class TwoSAT_SCC {
 	}
 	//end for i
 
+	/**
+	 * Method: solveRenumbered
+	 *         Packed SCC reduction (TwoSAT_ImplicationGraph) of the clauses of a data file, after renumbering the
+	 *         variables and reordering the clauses for memory locality (see TwoSAT_Renumbering.java). Pays off when
+	 *         the variable labels are scattered. The model is mapped back to the original labels and checked against
+	 *         the original clauses.
+	 * @param fileName
+	 * @return true if the clauses are satisfiable
+	 * @throws IOException
+	 * @throws IllegalStateException if the mapped-back model fails that check (a bug in the renumbering, not a verdict)
+	 */
+	public static boolean solveRenumbered(String fileName) throws IOException {
+		return solveRenumbered(TwoSAT_ClauseList.load(fileName));
+	}
+
+	/**
+	 * Method: solveRenumbered
+	 * @param clauses
+	 * @return true if the clauses are satisfiable
+	 */
+	static boolean solveRenumbered(TwoSAT_ClauseList clauses) {
+		TwoSAT_Renumbering renumbering = new TwoSAT_Renumbering(clauses);
+		TwoSAT_ImplicationGraph graph = new TwoSAT_ImplicationGraph(renumbering.literals, renumbering.numOfClauses);
+		if (!graph.isSatisfiable()) return false;
+		long[] model = renumbering.toOriginal(graph.getModel());
+		if (!new TwoSAT_BulkEvaluator(new TwoSAT_ClauseStore(clauses)).isModel(model)) {
+			throw new IllegalStateException("Model mapped back from the renumbering does not satisfy the original clauses");
+		}
+		return true;
+	}
+
+	/**
+	 * Method: solveOffHeap
+	 *         For instances too big for the heap. Skips the object graph: the clauses are streamed off-heap (see
+	 *         TwoSAT_OffHeapFormula.java), and the packed SCC search (TwoSAT_Batch.Scratch) builds the implication
+	 *         graph in the formula's arena, with long edge indices. All of it is freed before returning.
+	 * @param fileName
+	 * @return true if the clauses are satisfiable
+	 * @throws IOException
+	 */
+	public static boolean solveOffHeap(String fileName) throws IOException {
+		TwoSAT_OffHeapFormula formula = new TwoSAT_OffHeapFormula(fileName);
+		try {
+			TwoSAT_Batch.Scratch scratch = new TwoSAT_Batch.Scratch(formula.getStorage());
+			boolean satisfiable = scratch.solve(formula.lit1, formula.lit2, formula.numOfClauses, formula.maxVar);
+			System.out.printf("SCC: %s clauses, %.1f MB off-heap\n", formula.numOfClauses, formula.getAllocatedBytes() / 1048576.0);
+			return satisfiable;
+		} finally {
+			formula.close();
+		}
+	}
+
 	/**
 	 * Method: dfsLoop
 	 *         Invoked by Kosaraju() method.
@@ -0,0 +1,953 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/** Class: TwoSAT_SelfCheck.java
+ *
+ *  This class - runs randomized self-checks of the solvers and their supporting data structures.
+ *
+ *  Every check generates small random formulas (including unit clauses "x OR x" and tautologies "x OR ~x", and
+ *  variables that do not occur) and compares the result of the code under test with a brute-force answer or with a
+ *  simpler implementation. Formulas are kept small enough to enumerate all assignments.
+ *
+ *  Usage: java TwoSAT_SelfCheck [rounds] [seed]
+ *  Prints one line per check and exits with status 1 if any check failed.
+ */
+public class TwoSAT_SelfCheck {
+
+	private Random random;
+	private int numOfFailed;
+
+	/**
+	 * 1-arg constructor
+	 * @param seed
+	 */
+	public TwoSAT_SelfCheck(long seed) {
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Method: randomLiterals
+	 * @param numOfVars variables are drawn from 1 ... numOfVars
+	 * @param numOfClauses
+	 * @return two signed literals per clause. About one clause in eight is a unit clause or a tautology.
+	 */
+	int[] randomLiterals(int numOfVars, int numOfClauses) {
+		int[] literals = new int[2 * numOfClauses];
+		for (int c = 0; c < numOfClauses; c++) {
+			int a = randomLiteral(numOfVars);
+			int b = this.random.nextInt(8) == 0 ? (this.random.nextBoolean() ? a : -a) : randomLiteral(numOfVars);
+			literals[2 * c] = a;
+			literals[2 * c + 1] = b;
+		}
+		return literals;
+	}
+
+	/**
+	 * Method: randomLiteral
+	 * @param numOfVars
+	 * @return a random signed literal over 1 ... numOfVars
+	 */
+	private int randomLiteral(int numOfVars) {
+		int v = 1 + this.random.nextInt(numOfVars);
+		return this.random.nextBoolean() ? v : -v;
+	}
+
+	/**
+	 * Method: models
+	 *         Brute force: evaluates the clauses under every assignment of variables 1 ... numOfVars.
+	 * @param literals two signed literals per clause
+	 * @param numOfClauses
+	 * @param numOfVars at most 20
+	 * @return one flag per assignment (bit v - 1 of the index is the value of variable v): true if it is a model
+	 */
+	static boolean[] models(int[] literals, int numOfClauses, int numOfVars) {
+		boolean[] models = new boolean[1 << numOfVars];
+		for (int x = 0; x < models.length; x++) {
+			boolean model = true;
+			for (int c = 0; c < numOfClauses && model; c++) model = isTrue(x, literals[2 * c]) || isTrue(x, literals[2 * c + 1]);
+			models[x] = model;
+		}
+		return models;
+	}
+
+	/**
+	 * Method: isTrue
+	 * @param assignment bit v - 1 is the value of variable v
+	 * @param literal signed literal
+	 * @return the value of the literal under the assignment
+	 */
+	static boolean isTrue(int assignment, int literal) {
+		boolean value = ((assignment >>> (Math.abs(literal) - 1)) & 1) != 0;
+		return literal > 0 ? value : !value;
+	}
+
+	/**
+	 * Method: isSatisfiable
+	 * @param models result of models()
+	 * @return true if there is at least one model
+	 */
+	static boolean isSatisfiable(boolean[] models) {
+		for (boolean model : models) {
+			if (model) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Method: variant
+	 * @param literals two signed literals per clause
+	 * @param numOfClauses
+	 * @return the same clause set with the clauses shuffled, some of them mirrored and some repeated
+	 */
+	int[] variant(int[] literals, int numOfClauses) {
+		int m = numOfClauses + this.random.nextInt(numOfClauses + 1);
+		int[] variant = new int[2 * m];
+		for (int c = 0; c < m; c++) {
+			int k = c < numOfClauses ? c : this.random.nextInt(numOfClauses);
+			boolean mirror = this.random.nextBoolean();
+			variant[2 * c] = literals[2 * k + (mirror ? 1 : 0)];
+			variant[2 * c + 1] = literals[2 * k + (mirror ? 0 : 1)];
+		}
+		for (int c = m - 1; c > 0; c--) {	//Fisher-Yates shuffle of the clauses
+			int k = this.random.nextInt(c + 1);
+			int a = variant[2 * c], b = variant[2 * c + 1];
+			variant[2 * c] = variant[2 * k];
+			variant[2 * c + 1] = variant[2 * k + 1];
+			variant[2 * k] = a;
+			variant[2 * k + 1] = b;
+		}
+		return variant;
+	}
+
+	/**
+	 * Method: report
+	 * @param name name of the check
+	 * @param failures no. of failed cases
+	 * @param cases no. of cases
+	 */
+	private void report(String name, int failures, int cases) {
+		System.out.printf("%-40s %s (%s cases, %s failed)\n", name, failures == 0 ? "OK" : "FAILED", cases, failures);
+		if (failures > 0) this.numOfFailed++;
+	}
+
+	/**
+	 * Method: checkBreakCounts
+	 *         Flips random variables of a WalkSAT walk and compares the incrementally maintained break counts with a
+	 *         recount and with the definition (clauses that are true now and false once the variable is flipped)
+	 *         after every flip.
+	 * @param rounds
+	 */
+	void checkBreakCounts(int rounds) {
+		int failures = 0;
+		for (int r = 0; r < rounds; r++) {
+			int n = 1 + this.random.nextInt(12), m = 1 + this.random.nextInt(3 * n);
+			TwoSAT_ClauseStore store = new TwoSAT_ClauseStore(randomLiterals(n, m), m);
+			TwoSAT_PackedWalk walk = new TwoSAT_PackedWalk(store, this.random.nextLong());
+			walk.setStrategy(new TwoSAT_PickStrategy.WalkSAT(0.5));
+			walk.evaluateAll();
+			boolean consistent = true;
+			for (int k = 0; k < 50 && consistent; k++) {
+				walk.flip(1 + this.random.nextInt(store.maxVar));
+				consistent = walk.breakCountsConsistent();
+				for (int v = 1; v <= store.maxVar && consistent; v++) consistent = walk.getBreakCount(v) == breakCount(store, walk.getModel(), v);
+			}
+			if (!consistent) failures++;
+		}
+		report("Break counts vs recount and definition", failures, rounds);
+	}
+
+	/**
+	 * Method: checkImplies
+	 *         Compares TwoSAT_ReachabilityIndex.implies() with brute force for every pair of literals, including
+	 *         literals of two variables past the biggest variable of the formula, and checks that literal 0 is rejected.
+	 * @param rounds
+	 */
+	void checkImplies(int rounds) {
+		int failures = 0;
+		for (int r = 0; r < rounds; r++) {
+			int n = 1 + this.random.nextInt(8), m = 1 + this.random.nextInt(2 * n);
+			int[] literals = randomLiterals(n, m);
+			TwoSAT_ReachabilityIndex index = new TwoSAT_ReachabilityIndex(new TwoSAT_ImplicationGraph(literals, m));
+			int numOfVars = n + 2;
+			boolean[] models = models(literals, m, numOfVars);
+			boolean correct = true;
+			for (int a = -numOfVars; a <= numOfVars && correct; a++) {
+				for (int b = -numOfVars; b <= numOfVars && correct; b++) {
+					if (a == 0 || b == 0) continue;
+					boolean expected = true;
+					for (int x = 0; x < models.length && expected; x++) expected = !models[x] || !isTrue(x, a) || isTrue(x, b);
+					correct = index.implies(a, b) == expected;
+				}
+			}
+			try {
+				index.implies(0, 1);
+				correct = false;
+			} catch (IllegalArgumentException e) {
+				//expected
+			}
+			if (!correct) failures++;
+		}
+		report("Implication index vs brute force", failures, rounds);
+	}
+
+	/**
+	 * Method: checkResultCache
+	 *         Solves random formulas through a result cache and compares the verdicts with brute force. A shuffled,
+	 *         mirrored and partly repeated copy of each formula must hit the cache, and so must every formula after
+	 *         the cache has gone through save() and load().
+	 * @param rounds
+	 * @throws IOException
+	 */
+	void checkResultCache(int rounds) throws IOException {
+		int failures = 0;
+		TwoSAT_ResultCache cache = new TwoSAT_ResultCache(1L << 30, true);
+		List<TwoSAT_ClauseList> formulas = new ArrayList<>();
+		List<Boolean> verdicts = new ArrayList<>();
+		for (int r = 0; r < rounds; r++) {
+			int n = 1 + this.random.nextInt(10), m = 1 + this.random.nextInt(3 * n);
+			int[] literals = randomLiterals(n, m);
+			boolean expected = isSatisfiable(models(literals, m, n));
+			TwoSAT_ClauseList clauses = new TwoSAT_ClauseList(n, m, literals);
+			boolean correct = cache.solveWithSCC(clauses) == expected;
+
+			int[] variant = variant(literals, m);
+			long hits = cache.getHits();
+			correct &= cache.solveWithSCC(new TwoSAT_ClauseList(n, variant.length / 2, variant)) == expected;
+			correct &= cache.getHits() == hits + 1;
+			if (!correct) failures++;
+			formulas.add(clauses);
+			verdicts.add(expected);
+		}
+		report("Result cache vs brute force", failures, rounds);
+
+		File file = File.createTempFile("2sat-cache", ".bin");
+		failures = 0;
+		try {
+			cache.save(file.getPath());
+			TwoSAT_ResultCache loaded = new TwoSAT_ResultCache(1L << 30, true);
+			loaded.load(file.getPath());
+			for (int i = 0; i < formulas.size(); i++) {
+				if (loaded.solveWithSCC(formulas.get(i)) != verdicts.get(i)) failures++;
+			}
+			if (loaded.getMisses() != 0 || loaded.getRejectedModels() != 0) failures++;
+		} finally {
+			file.delete();
+		}
+		report("Result cache save()/load() round trip", failures, formulas.size());
+	}
+
+	/**
+	 * Method: plantedLiterals
+	 * @param numOfVars
+	 * @param numOfClauses
+	 * @return random clauses that all hold under a random (hidden) assignment, so the formula is satisfiable
+	 */
+	int[] plantedLiterals(int numOfVars, int numOfClauses) {
+		boolean[] planted = new boolean[numOfVars + 1];
+		for (int v = 1; v <= numOfVars; v++) planted[v] = this.random.nextBoolean();
+		int[] literals = new int[2 * numOfClauses];
+		for (int c = 0; c < numOfClauses; c++) {
+			int a, b;
+			do {
+				a = randomLiteral(numOfVars);
+				b = randomLiteral(numOfVars);
+			} while ((a > 0) != planted[Math.abs(a)] && (b > 0) != planted[Math.abs(b)]);
+			literals[2 * c] = a;
+			literals[2 * c + 1] = b;
+		}
+		return literals;
+	}
+
+	/**
+	 * Method: checkCheckpointResume
+	 *         Interrupts a checkpointed walk after a random no. of flips, resumes a fresh walk (with a
+	 *         different seed) from the checkpoint file, and checks that it makes exactly the flips and finds exactly
+	 *         the model of an uninterrupted walk with the original seed.
+	 * @param rounds
+	 * @throws IOException
+	 */
+	void checkCheckpointResume(int rounds) throws IOException {
+		int failures = 0, cases = 0;
+		File file = File.createTempFile("2sat-checkpoint", ".bin");
+		try {
+			for (int r = 0; r < rounds; r++) {
+				int n = 2000 + this.random.nextInt(2000), m = 3 * n;
+				TwoSAT_ClauseStore store = new TwoSAT_ClauseStore(plantedLiterals(n, m), m);
+				long seed = this.random.nextLong();
+				TwoSAT_PackedWalk uninterrupted = new TwoSAT_PackedWalk(store, seed);
+				boolean expected = uninterrupted.run();
+
+				final long flips = 1 + this.random.nextInt(16 << 10);
+				final AtomicBoolean stop = new AtomicBoolean();
+				TwoSAT_PackedWalk interrupted = new TwoSAT_PackedWalk(store, seed);
+				interrupted.setStrategy(new TwoSAT_PickStrategy.RandomPick() {
+					private long numOfPicks;
+
+					@Override
+					public int pick(TwoSAT_PackedWalk walk, int lit1, int lit2) {
+						if (++this.numOfPicks == flips) stop.set(true);
+						return super.pick(walk, lit1, lit2);
+					}
+				});
+				TwoSAT_WalkCheckpointer checkpointer = new TwoSAT_WalkCheckpointer(file.getPath(), 0);
+				interrupted.setCheckpointer(checkpointer);
+				interrupted.setStopFlag(stop);
+				file.delete();
+				boolean stopped = !interrupted.run();
+				checkpointer.close();
+				if (!stopped || !file.exists()) continue;	//solved before the stop, or stopped before the first checkpoint
+
+				cases++;
+				TwoSAT_PackedWalk resumed = new TwoSAT_PackedWalk(store, ~seed);
+				resumed.resume(file.getPath());
+				boolean correct = resumed.run() == expected;
+				correct &= resumed.getNumOfFlips() == uninterrupted.getNumOfFlips();
+				correct &= Arrays.equals(resumed.getModel(), uninterrupted.getModel());
+				if (!correct) failures++;
+			}
+		} finally {
+			file.delete();
+		}
+		report("Checkpoint resume vs uninterrupted walk", failures, cases);
+	}
+
+	/**
+	 * Method: checkOffHeap
+	 *         Reads formulas through TwoSAT_OffHeapFormula and runs the SCC search and the random walk on its arena.
+	 *         The verdict must match brute force, and the off-heap walk must make exactly the flips of a heap walk
+	 *         with the same seed.
+	 * @param rounds
+	 * @throws IOException
+	 */
+	void checkOffHeap(int rounds) throws IOException {
+		int failures = 0;
+		File file = File.createTempFile("2sat-offheap", ".txt");
+		try {
+			for (int r = 0; r < rounds; r++) {
+				int n = 1 + this.random.nextInt(10), m = 1 + this.random.nextInt(3 * n);
+				int[] literals = randomLiterals(n, m);
+				boolean expected = isSatisfiable(models(literals, m, n));
+				writeFormula(file, n, literals, m);
+				TwoSAT_OffHeapFormula formula = new TwoSAT_OffHeapFormula(file.getPath());
+				try {
+					TwoSAT_Batch.Scratch scratch = new TwoSAT_Batch.Scratch(formula.getStorage());
+					boolean correct = scratch.solve(formula.lit1, formula.lit2, formula.numOfClauses, formula.maxVar) == expected;
+
+					long seed = this.random.nextLong();
+					TwoSAT_PackedWalk offHeap = new TwoSAT_PackedWalk(new TwoSAT_ClauseStore(formula), seed);
+					TwoSAT_PackedWalk heap = new TwoSAT_PackedWalk(new TwoSAT_ClauseStore(literals, m), seed);
+					boolean found = offHeap.run();
+					correct &= found == heap.run() && offHeap.getNumOfFlips() == heap.getNumOfFlips();
+					correct &= !found || (expected && offHeap.isModel());
+					if (!correct) failures++;
+				} finally {
+					formula.close();
+				}
+			}
+		} finally {
+			file.delete();
+		}
+		report("Off-heap solvers vs brute force and heap", failures, rounds);
+	}
+
+	/**
+	 * Method: checkEnumerator
+	 *         Enumerates all models of random formulas and checks that they are exactly the brute-force models
+	 *         (with the variables that do not occur set to FALSE), each one once. Also checks count() with a cap.
+	 * @param rounds
+	 * @throws IOException
+	 */
+	void checkEnumerator(int rounds) throws IOException {
+		int failures = 0;
+		for (int r = 0; r < rounds; r++) {
+			final int n = 1 + this.random.nextInt(10);
+			int m = 1 + this.random.nextInt(2 * n);
+			int[] literals = randomLiterals(n, m);
+			final boolean[] models = models(literals, m, n);
+			int unused = (1 << n) - 1;	//variables that do not occur
+			for (int literal : literals) unused &= ~(1 << (Math.abs(literal) - 1));
+			int expected = 0;
+			for (int x = 0; x < models.length; x++) {
+				if (models[x] && (x & unused) == 0) expected++;
+			}
+
+			final boolean[] seen = new boolean[models.length];
+			final boolean[] correct = {true};
+			TwoSAT_Enumerator enumerator = new TwoSAT_Enumerator(new TwoSAT_ImplicationGraph(literals, m));
+			long count = enumerator.enumerate(new TwoSAT_Enumerator.ModelSink() {
+				@Override
+				public boolean accept(long[] model) {
+					int x = toInt(model, n);
+					if (!models[x] || seen[x]) correct[0] = false;	//not a model, or produced twice
+					seen[x] = true;
+					return true;
+				}
+			}, Long.MAX_VALUE);
+			long cap = 1 + this.random.nextInt(expected + 1);
+			if (!correct[0] || count != expected || enumerator.count(cap) != Math.min(cap, expected)) failures++;
+		}
+		report("Model enumeration vs brute force", failures, rounds);
+	}
+
+	/**
+	 * Method: checkNormalizer
+	 *         Pads random formulas with mirrored copies of their own clauses and with tautologies, at random positions,
+	 *         and checks that TwoSAT_ClauseNormalizer keeps one copy of every distinct clause: the normalized
+	 *         formula must have the same models (hence the same verdict) as the original under brute force, no
+	 *         tautology and no duplicate left, and counts that add up. Also checks the hash set sizing, including
+	 *         expected sizes whose doubling overflows an int.
+	 * @param rounds
+	 */
+	void checkNormalizer(int rounds) {
+		int failures = 0;
+		for (int r = 0; r < rounds; r++) {
+			int n = 1 + this.random.nextInt(10), m = 1 + this.random.nextInt(3 * n);
+			List<int[]> clauses = new ArrayList<>();
+			int[] literals = randomLiterals(n, m);
+			for (int c = 0; c < m; c++) clauses.add(new int[] {literals[2 * c], literals[2 * c + 1]});
+			for (int k = this.random.nextInt(2 * m + 1); k > 0; k--) {
+				int[] clause = clauses.get(this.random.nextInt(clauses.size()));
+				int v = 1 + this.random.nextInt(n);
+				int[] extra = this.random.nextInt(4) == 0 ? new int[] {v, -v}
+						: this.random.nextBoolean() ? new int[] {clause[1], clause[0]} : clause.clone();
+				clauses.add(this.random.nextInt(clauses.size() + 1), extra);
+			}
+			int total = clauses.size();
+			int[] padded = new int[2 * total];
+			for (int c = 0; c < total; c++) {
+				padded[2 * c] = clauses.get(c)[0];
+				padded[2 * c + 1] = clauses.get(c)[1];
+			}
+
+			TwoSAT_ClauseNormalizer normalizer = new TwoSAT_ClauseNormalizer(this.random.nextInt(total + 1));	//may grow
+			TwoSAT_ClauseList normalized = normalizer.normalize(new TwoSAT_ClauseList(n, total, padded));
+			boolean[] expected = models(padded, total, n), actual = models(normalized.literals, normalized.numOfClauses, n);
+			boolean correct = isSatisfiable(actual) == isSatisfiable(expected) && Arrays.equals(actual, expected)
+					&& normalizer.getNumOfAdmitted() == normalized.numOfClauses
+					&& normalizer.getNumOfAdmitted() + normalizer.getNumOfDuplicates() + normalizer.getNumOfTautologies() == total;
+			List<Long> keys = new ArrayList<>();
+			for (int c = 0; c < normalized.numOfClauses && correct; c++) {
+				int a = normalized.literals[2 * c], b = normalized.literals[2 * c + 1];
+				long key = clauseKey(a, b);
+				correct = a != -b && !keys.contains(key);
+				keys.add(key);
+			}
+			if (!correct) failures++;
+		}
+
+		int max = TwoSAT_ClauseNormalizer.LongHashSet.MAX_CAPACITY;
+		int[][] sizes = {{0, 8}, {4, 8}, {5, 16}, {1 << 20, 1 << 21}, {1 << 29, 1 << 30}, {(1 << 29) + 1, max},
+				{Integer.MAX_VALUE, max}, {-1, 8}};
+		for (int[] size : sizes) {
+			if (TwoSAT_ClauseNormalizer.LongHashSet.capacityFor(size[0]) != size[1]) failures++;
+		}
+		report("Normalizer vs brute force and sizing", failures, rounds + sizes.length);
+	}
+
+	/**
+	 * Method: checkComponents
+	 *         Builds formulas out of up to 4 independent groups of variables, with the labels of each group scattered
+	 *         over 1 ... n, and about every third formula containing a group that is unsatisfiable on its own. Checks
+	 *         the no. of components, the verdict and the merged model of TwoSAT_Components against brute force.
+	 *         The walk may miss a model with small probability, so a satisfiable formula gets up to 5 seeds.
+	 * @param rounds
+	 */
+	void checkComponents(int rounds) {
+		int failures = 0;
+		for (int r = 0; r < rounds; r++) {
+			int n = 2 + this.random.nextInt(11);
+			int[] label = new int[n + 1];	//a random permutation of 1 ... n
+			for (int v = 1; v <= n; v++) label[v] = v;
+			for (int v = n; v > 1; v--) {
+				int k = 1 + this.random.nextInt(v);
+				int t = label[v];
+				label[v] = label[k];
+				label[k] = t;
+			}
+
+			/* Consecutive runs of the permutation are the groups. */
+			List<Integer> literals = new ArrayList<>();
+			int numOfGroups = 1 + this.random.nextInt(4);
+			boolean addUnsatisfiable = this.random.nextInt(3) == 0;
+			for (int g = 0, from = 1; g < numOfGroups && from <= n; g++) {
+				int size = g == numOfGroups - 1 ? n - from + 1 : 1 + this.random.nextInt(n - from + 1);
+				int[] group = randomLiterals(size, 1 + this.random.nextInt(2 * size));
+				for (int literal : group) literals.add(literal > 0 ? label[from - 1 + literal] : -label[from - 1 - literal]);
+				if (addUnsatisfiable && g == 0 && size >= 2) {	//(a OR b)(a OR ~b)(~a OR b)(~a OR ~b)
+					int a = label[from], b = label[from + 1];
+					literals.addAll(Arrays.asList(a, b, a, -b, -a, b, -a, -b));
+				}
+				from += size;
+			}
+			int m = literals.size() / 2;
+			int[] signed = new int[2 * m];
+			for (int i = 0; i < signed.length; i++) signed[i] = literals.get(i);
+			boolean[] models = models(signed, m, n);
+			boolean expected = isSatisfiable(models);
+
+			/* Expected no. of components: connected components of the variables that occur. */
+			int[] comp = new int[n + 1];
+			for (int v = 1; v <= n; v++) comp[v] = v;
+			for (boolean changed = true; changed; ) {
+				changed = false;
+				for (int c = 0; c < m; c++) {
+					int a = Math.abs(signed[2 * c]), b = Math.abs(signed[2 * c + 1]);
+					int min = Math.min(comp[a], comp[b]);
+					if (comp[a] != min || comp[b] != min) {
+						comp[a] = comp[b] = min;
+						changed = true;
+					}
+				}
+			}
+			boolean[] occurs = new boolean[n + 1];
+			for (int literal : signed) occurs[Math.abs(literal)] = true;
+			int numOfComps = 0;
+			for (int v = 1; v <= n; v++) {
+				if (occurs[v] && comp[v] == v) numOfComps++;
+			}
+
+			TwoSAT_ClauseStore store = new TwoSAT_ClauseStore(signed, m);
+			TwoSAT_Components components = new TwoSAT_Components(store);
+			boolean correct = components.getNumOfComps() == numOfComps;
+			boolean found = false;
+			for (int seed = 0; seed < (expected ? 5 : 1) && !found; seed++) {
+				found = components.solve(1 + this.random.nextInt(4), this.random.nextLong());
+				if (found) correct &= models[toInt(components.getModel(), n)];
+			}
+			if (!correct || found != expected) failures++;
+		}
+		report("Components vs brute force", failures, rounds);
+	}
+
+	/**
+	 * Method: checkRenumbering
+	 *         Checks that TwoSAT_Renumbering is a permutation of the variables that maps the clauses onto the renumbered
+	 *         ones, that the SCC verdict is the same before and after renumbering (and matches brute force), and that
+	 *         models found in the new numbering (by the SCC reduction and by the walk) satisfy the original clauses
+	 *         once mapped back with toOriginal().
+	 * @param rounds
+	 */
+	void checkRenumbering(int rounds) {
+		int failures = 0;
+		for (int r = 0; r < rounds; r++) {
+			int n = 1 + this.random.nextInt(10), m = 1 + this.random.nextInt(3 * n);
+			int[] literals = randomLiterals(n, m);
+			boolean[] models = models(literals, m, n);
+			boolean expected = isSatisfiable(models);
+			TwoSAT_Renumbering renumbering = new TwoSAT_Renumbering(literals, m);
+
+			/* A permutation of 1 ... maxVar that keeps signs, and the clauses are the mapped original ones. */
+			boolean correct = renumbering.numOfClauses == m;
+			boolean[] used = new boolean[renumbering.maxVar + 1];
+			for (int v = 1; v <= renumbering.maxVar && correct; v++) {
+				int w = renumbering.toNew(v);
+				correct = w >= 1 && w <= renumbering.maxVar && !used[w] && renumbering.toNew(-v) == -w && renumbering.toOld(w) == v;
+				if (correct) used[w] = true;
+			}
+			long[] mapped = new long[m], renumbered = new long[m];
+			for (int c = 0; c < m && correct; c++) {
+				mapped[c] = clauseKey(renumbering.toNew(literals[2 * c]), renumbering.toNew(literals[2 * c + 1]));
+				renumbered[c] = clauseKey(renumbering.literals[2 * c], renumbering.literals[2 * c + 1]);
+			}
+			Arrays.sort(mapped);
+			Arrays.sort(renumbered);
+			correct &= Arrays.equals(mapped, renumbered);
+
+			/* Same verdict, and models that map back to models. */
+			TwoSAT_ImplicationGraph graph = new TwoSAT_ImplicationGraph(renumbering.literals, m);
+			correct &= graph.isSatisfiable() == expected && new TwoSAT_ImplicationGraph(literals, m).isSatisfiable() == expected;
+			try {
+				correct &= TwoSAT_SCC.solveRenumbered(new TwoSAT_ClauseList(n, m, literals)) == expected;
+			} catch (IllegalStateException e) {
+				correct = false;	//the mapped-back model was wrong
+			}
+			if (correct && expected) {
+				correct = models[toInt(renumbering.toOriginal(graph.getModel()), n)];
+				TwoSAT_PackedWalk walk = new TwoSAT_PackedWalk(new TwoSAT_ClauseStore(renumbering.literals, m), this.random.nextLong());
+				if (walk.run()) correct &= models[toInt(renumbering.toOriginal(walk.getModel()), n)];
+			}
+			if (!correct) failures++;
+		}
+		report("Renumbering vs plain and brute force", failures, rounds);
+	}
+
+	/**
+	 * Method: clauseKey
+	 * @param a
+	 * @param b
+	 * @return the clause (a OR b) as a long, the same for (b OR a)
+	 */
+	private static long clauseKey(int a, int b) {
+		return ((long) Math.min(a, b) << 32) | (Math.max(a, b) & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Method: toInt
+	 * @param model assignment bitset, indexed by variable
+	 * @param numOfVars
+	 * @return the assignment of variables 1 ... numOfVars as used by models() (bit v - 1 = variable v)
+	 */
+	private static int toInt(long[] model, int numOfVars) {
+		int x = 0;
+		for (int v = 1; v <= numOfVars && v < model.length << 6; v++) {
+			if (TwoSAT_ClauseStore.getValue(model, v)) x |= 1 << (v - 1);
+		}
+		return x;
+	}
+
+	/**
+	 * Method: checkParallelLoader
+	 *         Writes files of a few MB with irregular formatting (runs of blanks and tabs, CRLF line ends, extra
+	 *         numbers after the second literal) and checks that TwoSAT_ParallelLoader, with a random no. of threads,
+	 *         reads exactly the clauses the sequential reader does. The files are big enough to be split into many
+	 *         ranges, whose boundaries then fall at random points in the lines. A gzipped copy of each file must
+	 *         come out of TwoSAT_GzipPipeline the same way; it spans several inflate buffers.
+	 * @param rounds
+	 * @throws IOException
+	 */
+	void checkParallelLoader(int rounds) throws IOException {
+		int failures = 0, gzipFailures = 0;
+		File file = File.createTempFile("2sat-parallel", ".txt");
+		File gzip = File.createTempFile("2sat-parallel", ".txt.gz");
+		try {
+			for (int r = 0; r < rounds; r++) {
+				int n = 1 + this.random.nextInt(1000000), m = 100000 + this.random.nextInt(200000);
+				PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+				out.printf("%s %s\n", n, m);
+				for (int c = 0; c < m; c++) {
+					out.print(randomLiteral(n));
+					out.print(this.random.nextInt(4) == 0 ? " \t " : " ");
+					out.print(randomLiteral(n));
+					if (this.random.nextInt(8) == 0) out.print(" " + this.random.nextInt(100));
+					out.print(this.random.nextInt(4) == 0 ? "\r\n" : "\n");
+				}
+				out.close();
+
+				TwoSAT_ClauseList expected = TwoSAT_ClauseList.readText(file.getPath());
+				try {
+					TwoSAT_ClauseList parallel = new TwoSAT_ParallelLoader(file.getPath(), 1 + this.random.nextInt(8)).load();
+					if (parallel.numOfVars != expected.numOfVars || parallel.numOfClauses != expected.numOfClauses
+							|| !Arrays.equals(parallel.literals, expected.literals)) failures++;
+				} catch (IOException e) {
+					failures++;	//e.g. a line split between two ranges
+				}
+
+				OutputStream gzOut = new GZIPOutputStream(new FileOutputStream(gzip));
+				Files.copy(file.toPath(), gzOut);
+				gzOut.close();
+				try {
+					TwoSAT_ClauseList inflated = new TwoSAT_GzipPipeline(gzip.getPath(), 1 + this.random.nextInt(8)).load();
+					if (inflated.numOfVars != expected.numOfVars || inflated.numOfClauses != expected.numOfClauses
+							|| !Arrays.equals(inflated.literals, expected.literals)) gzipFailures++;
+				} catch (IOException e) {
+					gzipFailures++;	//e.g. a line split between two buffers
+				}
+			}
+		} finally {
+			file.delete();
+			gzip.delete();
+		}
+		report("Parallel loader vs sequential reader", failures, rounds);
+		report("Gzip pipeline vs sequential reader", gzipFailures, rounds);
+	}
+
+	/**
+	 * Method: checkBatch
+	 *         Solves one batch of random formulas (some of them empty) with TwoSAT_Batch.solve() and checks every
+	 *         verdict against brute force, and every model against the clauses.
+	 * @param rounds no. of formulas in the batch
+	 */
+	void checkBatch(int rounds) {
+		int[][] formulas = new int[rounds][];
+		int[] offsets = new int[rounds + 1];
+		for (int f = 0; f < rounds; f++) {
+			int n = 1 + this.random.nextInt(10), m = this.random.nextInt(8) == 0 ? 0 : 1 + this.random.nextInt(3 * n);
+			formulas[f] = randomLiterals(n, m);
+			offsets[f + 1] = offsets[f] + 2 * m;
+		}
+		int[] arena = new int[offsets[rounds]];
+		for (int f = 0; f < rounds; f++) System.arraycopy(formulas[f], 0, arena, offsets[f], formulas[f].length);
+
+		TwoSAT_Batch.Result result = TwoSAT_Batch.solve(arena, offsets, true);
+		int failures = 0;
+		for (int f = 0; f < rounds; f++) {
+			int m = formulas[f].length / 2, maxVar = 0;
+			for (int literal : formulas[f]) maxVar = Math.max(maxVar, Math.abs(literal));
+			boolean[] models = models(formulas[f], m, maxVar);
+			boolean correct = result.isSatisfiable(f) == isSatisfiable(models);
+			if (correct && result.isSatisfiable(f)) {
+				int x = 0;
+				for (int v = 1; v <= maxVar; v++) {
+					if (result.getValue(f, v)) x |= 1 << (v - 1);
+				}
+				correct = models[x];
+			}
+			if (!correct) failures++;
+		}
+		report("Batch solver vs brute force", failures, rounds);
+	}
+
+	/**
+	 * Method: checkBatchOffsets
+	 *         TwoSAT_Batch.solve() must reject offsets that do not cut the arena into whole clauses, on the caller's
+	 *         thread, and accept an arena whose first formula does not start at index 0.
+	 */
+	void checkBatchOffsets() {
+		int[] arena = {1, 2, -1, 2, 1, -2};
+		int[][] bad = {{}, {-2, 2}, {0, 4, 2}, {0, 3}, {0, 2, 5}, {0, 8}};
+		int failures = 0;
+		for (int[] offsets : bad) {
+			try {
+				TwoSAT_Batch.solve(arena, offsets, true);
+				failures++;
+			} catch (IllegalArgumentException e) {
+				//expected
+			}
+		}
+		TwoSAT_Batch.Result result = TwoSAT_Batch.solve(arena, new int[] {2, 6, 6}, true);
+		if (!result.isSatisfiable(0) || !result.isSatisfiable(1) || result.getValue(0, 1) != result.getValue(0, 2)) failures++;	//(~1 v 2)(1 v ~2): 1 == 2
+		report("Batch solver rejects bad offsets", failures, bad.length + 1);
+	}
+
+	/**
+	 * Method: checkLoaderErrors
+	 *         Empty files, a blank header line and files with fewer clause lines than the header says must make every
+	 *         reader (sequential, parallel, gzip pipeline and off-heap) throw an IOException.
+	 * @throws IOException
+	 */
+	void checkLoaderErrors() throws IOException {
+		String[] contents = {"", "\n", "3 2\n1 -2\n", "3 2\n1 -2"};
+		int failures = 0, cases = 0;
+		File text = File.createTempFile("2sat-broken", ".txt");
+		File gzip = File.createTempFile("2sat-broken", ".txt.gz");
+		try {
+			for (String content : contents) {
+				byte[] bytes = content.getBytes("US-ASCII");
+				FileOutputStream out = new FileOutputStream(text);
+				out.write(bytes);
+				out.close();
+				OutputStream gzOut = new GZIPOutputStream(new FileOutputStream(gzip));
+				gzOut.write(bytes);
+				gzOut.close();
+
+				for (int reader = 0; reader < 4; reader++) {
+					cases++;
+					try {
+						if (reader == 0) TwoSAT_ClauseList.readText(text.getPath());
+						else if (reader == 1) new TwoSAT_ParallelLoader(text.getPath()).load();
+						else if (reader == 2) new TwoSAT_GzipPipeline(gzip.getPath()).load();
+						else new TwoSAT_OffHeapFormula(text.getPath()).close();
+						failures++;	//no exception at all
+					} catch (IOException e) {
+						//expected
+					} catch (RuntimeException e) {
+						failures++;
+					}
+				}
+			}
+		} finally {
+			text.delete();
+			gzip.delete();
+		}
+		report("Loaders reject empty/truncated files", failures, cases);
+	}
+
+	/**
+	 * Method: checkLoaderNumberRange
+	 *         Numbers outside the int range, in the header or in a clause line, must make every reader throw, the way
+	 *         Integer.parseInt() makes the sequential reader throw, instead of silently wrapping around. Numbers right
+	 *         at the ends of the range must be read exactly as the sequential reader reads them.
+	 * @throws IOException
+	 */
+	void checkLoaderNumberRange() throws IOException {
+		String[] outOfRange = {"9999999999 1\n1 2\n", "3 1\n9999999999 1\n", "3 1\n1 2147483648\n",
+				"3 1\n-2147483649 1\n", "3 1\n1 -99999999999999999999999\n"};
+		String[] inRange = {"3 2\n2147483647 -2147483648\n+5 -0\n", "2147483647 1\n-1 1\n"};
+		int failures = 0, cases = 0;
+		File text = File.createTempFile("2sat-range", ".txt");
+		File gzip = File.createTempFile("2sat-range", ".txt.gz");
+		try {
+			for (int k = 0; k < outOfRange.length + inRange.length; k++) {
+				boolean reject = k < outOfRange.length;
+				byte[] bytes = (reject ? outOfRange[k] : inRange[k - outOfRange.length]).getBytes("US-ASCII");
+				FileOutputStream out = new FileOutputStream(text);
+				out.write(bytes);
+				out.close();
+				OutputStream gzOut = new GZIPOutputStream(new FileOutputStream(gzip));
+				gzOut.write(bytes);
+				gzOut.close();
+
+				TwoSAT_ClauseList expected = null;
+				for (int reader = 0; reader < (reject ? 4 : 3); reader++) {
+					cases++;
+					try {
+						TwoSAT_ClauseList list = null;
+						if (reader == 0) list = expected = TwoSAT_ClauseList.readText(text.getPath());
+						else if (reader == 1) list = new TwoSAT_ParallelLoader(text.getPath()).load();
+						else if (reader == 2) list = new TwoSAT_GzipPipeline(gzip.getPath()).load();
+						else new TwoSAT_OffHeapFormula(text.getPath()).close();
+						if (reject || expected == null || list.numOfVars != expected.numOfVars
+								|| list.numOfClauses != expected.numOfClauses || !Arrays.equals(list.literals, expected.literals)) failures++;
+					} catch (NumberFormatException e) {
+						if (!reject) failures++;
+					} catch (IOException e) {
+						if (!reject) failures++;
+					}
+				}
+			}
+		} finally {
+			text.delete();
+			gzip.delete();
+		}
+		report("Loaders reject numbers beyond int range", failures, cases);
+	}
+
+	/**
+	 * Method: checkOffHeapCleanup
+	 *         Files that fail after the header has been read (truncated, malformed number, variable out of range)
+	 *         make TwoSAT_OffHeapFormula allocate its clause arrays and then throw. The direct memory in use must
+	 *         return to where it was, since the caller never gets a formula it could close.
+	 * @throws IOException
+	 */
+	void checkOffHeapCleanup() throws IOException {
+		String[] contents = {"3 1000000\n1 -2\n", "3 1000000\n1 -2\n1 x\n", "3 1000000\n1 -2\n2000000000 1\n"};
+		BufferPoolMXBean direct = null;
+		for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+			if (pool.getName().equals("direct")) direct = pool;
+		}
+		int failures = 0;
+		File file = File.createTempFile("2sat-cleanup", ".txt");
+		try {
+			for (String content : contents) {
+				FileOutputStream out = new FileOutputStream(file);
+				out.write(content.getBytes("US-ASCII"));
+				out.close();
+				long before = direct.getMemoryUsed();
+				try {
+					new TwoSAT_OffHeapFormula(file.getPath()).close();
+					failures++;	//no exception at all
+				} catch (IOException | IllegalArgumentException e) {
+					if (direct.getMemoryUsed() - before >= 1000000) failures++;	//the clause arrays take 8 MB
+				}
+			}
+		} finally {
+			file.delete();
+		}
+		report("Off-heap reader frees memory on errors", failures, contents.length);
+	}
+
+	/**
+	 * Method: checkLiteralRange
+	 *         Variables beyond TwoSAT_ClauseStore.MAX_VARIABLE have literal codes that do not fit in an int. Every
+	 *         place that encodes loaded literals (heap and off-heap clause stores, implication graph, renumbering)
+	 *         must reject them instead of indexing its arrays with wrapped-around codes.
+	 * @throws IOException
+	 */
+	void checkLiteralRange() throws IOException {
+		int[] bad = {TwoSAT_ClauseStore.MAX_VARIABLE + 1, -TwoSAT_ClauseStore.MAX_VARIABLE - 1, Integer.MAX_VALUE, Integer.MIN_VALUE};
+		int failures = 0, cases = 0;
+		File file = File.createTempFile("2sat-range", ".txt");
+		try {
+			for (int literal : bad) {
+				int[] literals = {1, -2, 3, literal, 2, 3};
+				writeFormula(file, 3, literals, 3);
+				for (int user = 0; user < 4; user++) {
+					cases++;
+					try {
+						if (user == 0) new TwoSAT_ClauseStore(literals, 3);
+						else if (user == 1) new TwoSAT_OffHeapFormula(file.getPath()).close();
+						else if (user == 2) new TwoSAT_ImplicationGraph(literals, 3);
+						else new TwoSAT_Renumbering(literals, 3);
+						failures++;	//no exception at all
+					} catch (IllegalArgumentException e) {
+						//expected
+					} catch (RuntimeException e) {
+						failures++;	//e.g. an index out of bounds
+					}
+				}
+			}
+		} finally {
+			file.delete();
+		}
+		report("Literal codes reject huge variables", failures, cases);
+	}
+
+	/**
+	 * Method: writeFormula
+	 *         Writes a formula in the data file format.
+	 * @param file
+	 * @param numOfVars
+	 * @param literals two signed literals per clause
+	 * @param numOfClauses
+	 * @throws IOException
+	 */
+	private static void writeFormula(File file, int numOfVars, int[] literals, int numOfClauses) throws IOException {
+		PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+		out.printf("%s %s\n", numOfVars, numOfClauses);
+		for (int c = 0; c < numOfClauses; c++) out.printf("%s %s\n", literals[2 * c], literals[2 * c + 1]);
+		out.close();
+	}
+
+	/**
+	 * Method: breakCount
+	 * @param store
+	 * @param bits assignment
+	 * @param v variable
+	 * @return no. of clauses that are true under bits, but false once v is flipped
+	 */
+	private static int breakCount(TwoSAT_ClauseStore store, long[] bits, int v) {
+		long[] flipped = bits.clone();
+		TwoSAT_ClauseStore.flip(flipped, v);
+		int count = 0;
+		for (int c = 0; c < store.numOfClauses; c++) {
+			if (store.isSatisfied(bits, c) && !store.isSatisfied(flipped, c)) count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Method: main
+	 * @param args [rounds] [seed]
+	 */
+	public static void main(String[] args) throws IOException {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+		System.out.printf("Self-check with %s rounds, seed %s\n", rounds, seed);
+		TwoSAT_SelfCheck check = new TwoSAT_SelfCheck(seed);
+		check.checkBreakCounts(rounds);
+		check.checkImplies(rounds);
+		check.checkResultCache(rounds);
+		check.checkCheckpointResume(Math.max(1, rounds / 100));
+		check.checkOffHeap(Math.max(1, rounds / 10));
+		check.checkBatch(rounds);
+		check.checkBatchOffsets();
+		check.checkEnumerator(rounds);
+		check.checkNormalizer(rounds);
+		check.checkComponents(rounds);
+		check.checkRenumbering(rounds);
+		check.checkParallelLoader(Math.max(1, rounds / 200));
+		check.checkLoaderErrors();
+		check.checkLoaderNumberRange();
+		check.checkLiteralRange();
+		check.checkOffHeapCleanup();
+		if (check.numOfFailed > 0) {
+			System.out.printf("%s check(s) FAILED\n", check.numOfFailed);
+			System.exit(1);
+		}
+		System.out.println("All checks passed.");
+	}
+}
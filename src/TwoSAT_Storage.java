@@ -0,0 +1,188 @@
+import java.util.Arrays;
+
+/** Class: TwoSAT_Storage.java
+ *
+ *  This class - where the big arrays of the packed engines live: on the Java heap, or off-heap.
+ *
+ *  The SCC search (TwoSAT_Batch.Scratch) and the random walk (TwoSAT_ClauseStore, TwoSAT_PackedWalk and
+ *  TwoSAT_BulkEvaluator) keep every array whose size grows with the formula in an Ints or a Longs taken from a
+ *  storage, and index them with longs. There is one copy of each engine; only the storage differs:
+ *
+ *  1) HEAP: plain int[] and long[] arrays (up to 2^31 - 1 elements each). The accessors are small enough for the JIT
+ *     to inline, so the engines run as fast as on the arrays themselves.
+ *  2) TwoSAT_OffHeapArena: segmented direct memory, for instances with more than 2^31 implication edges, or to keep
+ *     gigabytes of clauses out of the heap. Closing the arena frees everything allocated from it.
+ */
+public abstract class TwoSAT_Storage {
+
+	/* Plain Java arrays, reclaimed by the GC. */
+	public static final TwoSAT_Storage HEAP = new TwoSAT_Storage() {
+		@Override
+		public Ints allocateInts(long length) {
+			return new HeapInts(new int[checkLength(length)]);
+		}
+
+		@Override
+		public Longs allocateLongs(long length) {
+			return new HeapLongs(new long[checkLength(length)]);
+		}
+	};
+
+	/**
+	 * Method: allocateInts
+	 * @param length no. of ints
+	 * @return a new zero-filled int array
+	 */
+	public abstract Ints allocateInts(long length);
+
+	/**
+	 * Method: allocateLongs
+	 * @param length no. of longs
+	 * @return a new zero-filled long array
+	 */
+	public abstract Longs allocateLongs(long length);
+
+	/**
+	 * Method: checkLength
+	 * @param length
+	 * @return length as an int
+	 * @throws IllegalArgumentException if a Java array cannot be that long
+	 */
+	private static int checkLength(long length) {
+		if (length > Integer.MAX_VALUE - 8) throw new IllegalArgumentException(length + " elements do not fit in a Java array. Use a TwoSAT_OffHeapArena.");
+		return (int) length;
+	}
+
+	/**
+	 * Method: array
+	 *         Gives the heap engines that work on plain arrays (e.g. TwoSAT_ImplicationGraph) direct access.
+	 * @param ints
+	 * @return the array behind ints (not a copy)
+	 * @throws IllegalArgumentException if ints is not on the heap
+	 */
+	static int[] array(Ints ints) {
+		if (!(ints instanceof HeapInts)) throw new IllegalArgumentException("Not a heap array");
+		return ((HeapInts) ints).array;
+	}
+
+	/**
+	 * Class: Ints
+	 *        An int array with long indices.
+	 */
+	public abstract static class Ints {
+		/**
+		 * Method: get
+		 * @param i
+		 * @return element i
+		 */
+		public abstract int get(long i);
+
+		/**
+		 * Method: set
+		 * @param i
+		 * @param value
+		 */
+		public abstract void set(long i, int value);
+
+		/**
+		 * Method: length
+		 * @return no. of elements
+		 */
+		public abstract long length();
+
+		/**
+		 * Method: fill
+		 * @param value
+		 */
+		public void fill(int value) {
+			for (long i = 0, n = length(); i < n; i++) set(i, value);
+		}
+	}
+	//end public abstract static class Ints
+
+	/**
+	 * Class: Longs
+	 *        A long array with long indices.
+	 */
+	public abstract static class Longs {
+		/**
+		 * Method: get
+		 * @param i
+		 * @return element i
+		 */
+		public abstract long get(long i);
+
+		/**
+		 * Method: set
+		 * @param i
+		 * @param value
+		 */
+		public abstract void set(long i, long value);
+
+		/**
+		 * Method: length
+		 * @return no. of elements
+		 */
+		public abstract long length();
+	}
+	//end public abstract static class Longs
+
+	/**
+	 * Class: HeapInts
+	 */
+	static final class HeapInts extends Ints {
+		final int[] array;
+
+		HeapInts(int[] array) {
+			this.array = array;
+		}
+
+		@Override
+		public int get(long i) {
+			return this.array[(int) i];
+		}
+
+		@Override
+		public void set(long i, int value) {
+			this.array[(int) i] = value;
+		}
+
+		@Override
+		public long length() {
+			return this.array.length;
+		}
+
+		@Override
+		public void fill(int value) {
+			Arrays.fill(this.array, value);
+		}
+	}
+	//end static final class HeapInts
+
+	/**
+	 * Class: HeapLongs
+	 */
+	static final class HeapLongs extends Longs {
+		final long[] array;
+
+		HeapLongs(long[] array) {
+			this.array = array;
+		}
+
+		@Override
+		public long get(long i) {
+			return this.array[(int) i];
+		}
+
+		@Override
+		public void set(long i, long value) {
+			this.array[(int) i] = value;
+		}
+
+		@Override
+		public long length() {
+			return this.array.length;
+		}
+	}
+	//end static final class HeapLongs
+}
@@ -0,0 +1,158 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/** Class: TwoSAT_WalkCheckpointer.java
+ *
+ *  This class - writes checkpoints of a TwoSAT_PackedWalk to a file, on a background thread.
+ *
+ *  The walk never waits for I/O. Two snapshot buffers go back and forth between the walk and the writer thread
+ *  (double buffering): the walk serializes its state into a free buffer and hands it over; the writer writes it out and
+ *  gives the buffer back. If neither buffer is free (the writer is still busy with earlier checkpoints), the checkpoint
+ *  is skipped.
+ *
+ *  Every checkpoint is first written to "<fileName>.tmp" and then renamed over the checkpoint file, so a crash in the
+ *  middle of a write leaves the previous checkpoint intact. See TwoSAT_PackedWalk.writeState() for the file format.
+ */
+public class TwoSAT_WalkCheckpointer {
+
+	private static final ByteBuffer END = ByteBuffer.allocate(0);	//tells the writer thread to stop
+
+	private String fileName;
+	private long intervalNanos;			//minimum time between two checkpoints
+	private long lastCheckpoint;		//System.nanoTime() of the last checkpoint handed over (or of the start)
+	private BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(2);	//buffers the walk may fill
+	private BlockingQueue<ByteBuffer> full = new ArrayBlockingQueue<>(3);	//buffers waiting to be written (+ END)
+	private Thread writer;
+	private volatile IOException writeError;	//failure of the last write, or null if it succeeded
+	private int numOfWritten, numOfSkipped;
+
+	/**
+	 * 2-arg constructor. Starts the writer thread.
+	 * @param fileName checkpoint file
+	 * @param intervalMillis minimum time between two checkpoints, in millisecs
+	 */
+	public TwoSAT_WalkCheckpointer(String fileName, long intervalMillis) {
+		this.fileName = fileName;
+		this.intervalNanos = intervalMillis * 1000000L;
+		this.lastCheckpoint = System.nanoTime();
+		this.free.add(ByteBuffer.allocate(1 << 12));
+		this.free.add(ByteBuffer.allocate(1 << 12));
+		this.writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeLoop();
+			}
+		}, "2SAT checkpoint writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Method: isDue
+	 * @return true if the checkpoint interval has passed since the last checkpoint
+	 */
+	boolean isDue() {
+		return System.nanoTime() - this.lastCheckpoint >= this.intervalNanos;
+	}
+
+	/**
+	 * Method: offer
+	 *         Called by the walk: serializes its state into a free buffer and hands it to the writer thread.
+	 *         Never blocks.
+	 * @param walk
+	 * @return false if the checkpoint was skipped because the writer is still busy
+	 */
+	boolean offer(TwoSAT_PackedWalk walk) {
+		this.lastCheckpoint = System.nanoTime();
+		ByteBuffer buf = this.free.poll();
+		if (buf == null) {
+			this.numOfSkipped++;
+			return false;
+		}
+		int size = walk.stateSize();
+		if (buf.capacity() < size) buf = ByteBuffer.allocate(size + size / 4);
+		buf.clear();
+		walk.writeState(buf);
+		buf.flip();
+		this.full.add(buf);	//cannot fail: there are never more than 2 buffers plus END in the queue
+		return true;
+	}
+
+	/**
+	 * Method: writeLoop
+	 *         Body of the writer thread.
+	 */
+	private void writeLoop() {
+		while (true) {
+			ByteBuffer buf;
+			try {
+				buf = this.full.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (buf == END) return;
+			try {
+				write(buf);
+				this.numOfWritten++;
+				this.writeError = null;	//the checkpoint on disk is current again
+			} catch (IOException e) {
+				this.writeError = e;	//keep the walk going; the next checkpoint may succeed
+			}
+			this.free.add(buf);
+		}
+	}
+
+	/**
+	 * Method: write
+	 *         Writes one checkpoint to the temporary file, then renames it over the checkpoint file.
+	 * @param buf
+	 * @throws IOException
+	 */
+	private void write(ByteBuffer buf) throws IOException {
+		File tmp = new File(this.fileName + ".tmp");
+		FileOutputStream out = new FileOutputStream(tmp);
+		try {
+			out.write(buf.array(), 0, buf.limit());
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+		try {
+			Files.move(tmp.toPath(), new File(this.fileName).toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmp.toPath(), new File(this.fileName).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Method: close
+	 *         Waits for the pending checkpoints to be written, then stops the writer thread.
+	 * @throws IOException if the last write failed (earlier failures were made good by later checkpoints)
+	 */
+	public void close() throws IOException {
+		this.full.add(END);
+		try {
+			this.writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (this.writeError != null) throw this.writeError;
+	}
+
+	/**
+	 * Method: toString
+	 * @return no. of checkpoints written and skipped
+	 */
+	@Override
+	public String toString() {
+		return String.format("Checkpoints written to %s: %s (skipped while the writer was busy: %s)", this.fileName,
+				this.numOfWritten, this.numOfSkipped);
+	}
+}